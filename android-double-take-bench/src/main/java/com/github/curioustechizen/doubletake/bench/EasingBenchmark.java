@@ -0,0 +1,83 @@
+package com.github.curioustechizen.doubletake.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.OvershootInterpolator;
+
+import com.github.curioustechizen.doubletake.Easing;
+
+/**
+ * Measures the per-frame cost of the {@link Easing} curves against the framework interpolators they replace. One operation is one
+ * {@code getInterpolation()} call, stepping through the fractions of a 60 fps animation.
+ * <p>
+ * {@code PathInterpolator}, the framework counterpart of {@link Easing#cubicBezier(float, float, float, float)}, is left out: it is built
+ * from a native {@code Path} and cannot run on a plain JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EasingBenchmark {
+
+	// 300 ms at 60 fps, the default zoom duration
+	private static final int FRAMES = 18;
+
+	@Param({ "easing-decelerate", "framework-decelerate", "easing-accelerate-decelerate", "framework-accelerate-decelerate",
+			"easing-overshoot", "framework-overshoot", "easing-cubic-bezier" })
+	public String curve;
+
+	private Interpolator mInterpolator;
+	private final float[] mFractions = new float[FRAMES];
+	private int mFrame;
+
+	@Setup
+	public void setUp() {
+		mInterpolator = create(curve);
+		for (int i = 0; i < FRAMES; i++) {
+			mFractions[i] = (i + 1f) / FRAMES;
+		}
+	}
+
+	private static Interpolator create(String curve) {
+		if ("easing-decelerate".equals(curve)) {
+			return Easing.DECELERATE;
+		} else if ("framework-decelerate".equals(curve)) {
+			return new DecelerateInterpolator();
+		} else if ("easing-accelerate-decelerate".equals(curve)) {
+			return Easing.ACCELERATE_DECELERATE;
+		} else if ("framework-accelerate-decelerate".equals(curve)) {
+			return new AccelerateDecelerateInterpolator();
+		} else if ("easing-overshoot".equals(curve)) {
+			return Easing.OVERSHOOT;
+		} else if ("framework-overshoot".equals(curve)) {
+			return new OvershootInterpolator();
+		} else if ("easing-cubic-bezier".equals(curve)) {
+			return Easing.cubicBezier(0.4f, 0f, 0.2f, 1f);
+		}
+		throw new IllegalArgumentException("Unknown curve " + curve);
+	}
+
+	@Benchmark
+	public float getInterpolation() {
+		final int frame = mFrame;
+		mFrame = frame + 1 == FRAMES ? 0 : frame + 1;
+		return mInterpolator.getInterpolation(mFractions[frame]);
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.curioustechizen.doubletake.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.curioustechizen.doubletake.ZoomGeometry;
+
+/**
+ * Measures {@link ZoomGeometry}: one pair at a time, as {@code ZoomAnimation} does on a zoom, and whole batches of pairs, as a grid of
+ * thumbnails zooming into one container would.
+ * <p>
+ * The rectangles are random but seeded, so every run measures the same input. About one pair in a hundred has an empty rectangle,
+ * to keep the fallback path of {@link ZoomGeometry#computeBatch(int, int[], int[], int, float[])} in the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoomGeometryBenchmark {
+
+	@Param({ "0", "1", "2" })
+	public int mode;
+
+	@Param({ "1000", "5000" })
+	public int count;
+
+	private int[] mStartRects;
+	private int[] mFinalRects;
+	private float[] mOut;
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(42);
+		mStartRects = new int[count * ZoomGeometry.RECT_SIZE];
+		mFinalRects = new int[count * ZoomGeometry.RECT_SIZE];
+		for (int i = 0; i < count; i++) {
+			final int r = i * ZoomGeometry.RECT_SIZE;
+			// A thumbnail somewhere on a 1080x1920 screen...
+			final int left = random.nextInt(1000);
+			final int top = random.nextInt(1800);
+			final int size = random.nextInt(100) == 0 ? 0 : 48 + random.nextInt(300);
+			mStartRects[r] = left;
+			mStartRects[r + 1] = top;
+			mStartRects[r + 2] = left + size;
+			mStartRects[r + 3] = top + size * (2 + random.nextInt(3)) / 3;
+			// ...zooming into a container below a toolbar
+			mFinalRects[r] = 0;
+			mFinalRects[r + 1] = 56 + random.nextInt(200);
+			mFinalRects[r + 2] = 720 + random.nextInt(361);
+			mFinalRects[r + 3] = 1920;
+		}
+		mOut = new float[count * ZoomGeometry.RESULT_SIZE];
+	}
+
+	@Benchmark
+	public boolean compute() {
+		final int i = mNext;
+		mNext = i + 1 == count ? 0 : i + 1;
+		final int r = i * ZoomGeometry.RECT_SIZE;
+		final int[] s = mStartRects;
+		final int[] f = mFinalRects;
+		return ZoomGeometry.compute(mode, s[r], s[r + 1], s[r + 2], s[r + 3], f[r], f[r + 1], f[r + 2], f[r + 3], mOut, 0);
+	}
+
+	@Benchmark
+	public int computeBatch() {
+		return ZoomGeometry.computeBatch(mode, mStartRects, mFinalRects, count, mOut);
+	}
+}
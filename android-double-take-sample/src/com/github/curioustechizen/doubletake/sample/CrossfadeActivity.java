@@ -65,6 +65,13 @@ public class CrossfadeActivity extends Activity {
 	 */
 	private int mShortAnimationDuration;
 
+	/**
+	 * The two directions of the crossfade. They are built once and reused,
+	 * and each one takes over from the other if toggled mid-flight.
+	 */
+	private CrossfadeAnimation mShowContentAnimation;
+	private CrossfadeAnimation mShowLoadingAnimation;
+
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -79,6 +86,13 @@ public class CrossfadeActivity extends Activity {
 		// Retrieve and cache the system's default "short" animation time.
 		mShortAnimationDuration = getResources().getInteger(
 				android.R.integer.config_shortAnimTime);
+
+		mShowContentAnimation = new CrossfadeAnimation.Builder(mContentView, mLoadingView)
+				.animationTime(2000)
+				.build();
+		mShowLoadingAnimation = new CrossfadeAnimation.Builder(mLoadingView, mContentView)
+				.animationTime(2000)
+				.build();
 	}
 
 	@Override
@@ -112,14 +126,12 @@ public class CrossfadeActivity extends Activity {
 	 * Cross-fades between {@link #mContentView} and {@link #mLoadingView}.
 	 */
 	private void showContentOrLoadingIndicator(boolean contentLoaded) {
-		// Decide which view to hide and which to show.
-		final View showView = contentLoaded ? mContentView : mLoadingView;
-		final View hideView = contentLoaded ? mLoadingView : mContentView;
-
-		new CrossfadeAnimation.Builder(showView, hideView)
-				.animationTime(2000)
-				.build()
-				.animate();
+		// Crossfade towards the requested state.
+		if (contentLoaded) {
+			mShowContentAnimation.animate();
+		} else {
+			mShowLoadingAnimation.animate();
+		}
 
 	}
 }
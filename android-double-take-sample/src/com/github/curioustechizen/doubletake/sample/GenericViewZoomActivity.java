@@ -1,16 +1,25 @@
 package com.github.curioustechizen.doubletake.sample;
 
+import android.app.Activity;
 import android.os.Bundle;
 import android.support.v4.app.FragmentActivity;
 import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.View.OnLongClickListener;
 import android.view.ViewGroup;
 
+import com.github.curioustechizen.doubletake.AnimationRequestQueue;
+import com.github.curioustechizen.doubletake.ContainerZoomController;
 import com.github.curioustechizen.doubletake.ZoomAnimation;
 
 public class GenericViewZoomActivity extends FragmentActivity {
 
+	private static final String STATE_ZOOM_PREFIX = "zoom";
+
+	private ZoomAnimation[] mZoomAnims;
+	private ContainerZoomController mZoomController;
+
 	@Override
 	protected void onCreate(Bundle arg0) {
 		super.onCreate(arg0);
@@ -26,31 +35,54 @@ public class GenericViewZoomActivity extends FragmentActivity {
 		final ViewGroup zoomedOutContainer = (ViewGroup) findViewById(
 				R.id.tableLayout1);
 
+		// Build the animations once and reuse them for every click. Each
+		// zoomed view is only created once its tile is touched.
+		final int animationTime = getResources().getInteger(
+				android.R.integer.config_longAnimTime);
+		final ZoomAnimation zoomAnim1 = buildZoomAnimation(this, view1,
+				zoomedViewFactory(R.color.holo_blue_bright, 0), zoomedInContainer,
+				zoomedOutContainer, animationTime);
+		final ZoomAnimation zoomAnim2 = buildZoomAnimation(this, view2,
+				zoomedViewFactory(R.color.holo_red_dark, 1), zoomedInContainer,
+				zoomedOutContainer, animationTime);
+		final ZoomAnimation zoomAnim3 = buildZoomAnimation(this, view3,
+				zoomedViewFactory(R.color.holo_orange_light, 2), zoomedInContainer,
+				zoomedOutContainer, animationTime);
+		final ZoomAnimation zoomAnim4 = buildZoomAnimation(this, view4,
+				zoomedViewFactory(R.color.holo_green_light, 3), zoomedInContainer,
+				zoomedOutContainer, animationTime);
+		mZoomAnims = new ZoomAnimation[] { zoomAnim1, zoomAnim2, zoomAnim3, zoomAnim4 };
+		// Long-pressing a zoomed tile switches straight to the next one
+		mZoomController = new ContainerZoomController.Builder(zoomedInContainer)
+			.animationTime(animationTime)
+			.build();
+		for (ZoomAnimation zoomAnim : mZoomAnims) {
+			mZoomController.addItem(zoomAnim);
+		}
+		// Come back zoomed in after a rotation, without animating again
+		for (int i = 0; i < mZoomAnims.length; i++) {
+			mZoomAnims[i].restoreInstanceState(arg0, STATE_ZOOM_PREFIX + i);
+		}
+
 		OnClickListener listener = new OnClickListener() {
 
 			@Override
 			public void onClick(View v) {
-				View zoomedView = null;
 				if(BuildConfig.DEBUG){
 					Log.d("android-double-take-sample", "Clicked on view");
 					
 				}
+				// Coalesced per frame: a double tap or taps on two tiles
+				// in the same frame start a single zoom
 				if (v == view1) {
-					zoomedView = findViewById(R.id.zoomedView1);
+					AnimationRequestQueue.requestZoomIn(zoomAnim1);
 				} else if (v == view2) {
-					zoomedView = findViewById(R.id.zoomedView2);
+					AnimationRequestQueue.requestZoomIn(zoomAnim2);
 				} else if (v == view3) {
-					zoomedView = findViewById(R.id.zoomedView3);
+					AnimationRequestQueue.requestZoomIn(zoomAnim3);
 				} else if (v == view4) {
-					zoomedView = findViewById(R.id.zoomedView4);
+					AnimationRequestQueue.requestZoomIn(zoomAnim4);
 				}
-				ZoomAnimation zoomAnim =new ZoomAnimation.Builder(v,zoomedView,
-						zoomedInContainer)
-					.animationTime(getResources().getInteger(
-							android.R.integer.config_longAnimTime))
-					.zoomedOutContainer(zoomedOutContainer)
-					.build();
-				zoomAnim.zoomIn();
 			}
 		};
 
@@ -58,6 +90,53 @@ public class GenericViewZoomActivity extends FragmentActivity {
 
 	}
 
+	@Override
+	protected void onDestroy() {
+		// The zoom animations are bound to this activity, the controller is not
+		mZoomController.release();
+		super.onDestroy();
+	}
+
+	@Override
+	protected void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		for (int i = 0; i < mZoomAnims.length; i++) {
+			mZoomAnims[i].saveInstanceState(outState, STATE_ZOOM_PREFIX + i);
+		}
+	}
+
+	private ZoomAnimation.ZoomedViewFactory zoomedViewFactory(final int colorResId, final int index) {
+		return new ZoomAnimation.ZoomedViewFactory() {
+			@Override
+			public View createZoomedInView(ViewGroup zoomedInContainer) {
+				final View zoomedView = new View(zoomedInContainer.getContext());
+				zoomedView.setBackgroundResource(colorResId);
+				zoomedView.setOnLongClickListener(new OnLongClickListener() {
+					@Override
+					public boolean onLongClick(View v) {
+						mZoomController.zoomIn(mZoomAnims[(index + 1) % mZoomAnims.length]);
+						return true;
+					}
+				});
+				return zoomedView;
+			}
+		};
+	}
+
+	private static ZoomAnimation buildZoomAnimation(Activity activity, View zoomedOutView,
+			ZoomAnimation.ZoomedViewFactory zoomedInViewFactory, ViewGroup zoomedInContainer,
+			ViewGroup zoomedOutContainer, int animationTime) {
+		return new ZoomAnimation.Builder(zoomedOutView, zoomedInViewFactory,
+				zoomedInContainer)
+			.animationTime(animationTime)
+			.zoomedOutContainer(zoomedOutContainer)
+			// Zoomed views in a real app are deep layouts. Animate a
+			// snapshot of them rather than redrawing them on every frame.
+			.snapshot(true)
+			.bindToActivity(activity)
+			.build();
+	}
+
 	private void setCommonListenerOnMultipleView(OnClickListener listener,
 			View... views) {
 		for (View v : views) {
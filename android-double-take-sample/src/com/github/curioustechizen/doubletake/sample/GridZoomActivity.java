@@ -0,0 +1,85 @@
+package com.github.curioustechizen.doubletake.sample;
+
+import android.os.Bundle;
+import android.support.v4.app.FragmentActivity;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.GridView;
+import android.widget.TextView;
+
+import com.github.curioustechizen.doubletake.AdapterZoomController;
+
+/**
+ * Zooms the tiles of a large grid into one shared zoomed-in view. Unlike {@link GenericViewZoomActivity}, there is no hidden zoomed view per tile:
+ * the content of the tapped tile is bound into the single zoomed view on demand.
+ */
+public class GridZoomActivity extends FragmentActivity {
+
+	private static final int ITEM_COUNT = 500;
+	private static final int[] COLORS = { R.color.holo_blue_bright, R.color.holo_red_dark,
+			R.color.holo_orange_light, R.color.holo_green_light };
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_zoom_grid);
+
+		final GridView grid = (GridView) findViewById(R.id.grid);
+		grid.setAdapter(new TileAdapter());
+
+		final AdapterZoomController controller = new AdapterZoomController.Builder(grid,
+				findViewById(R.id.zoomedView), (ViewGroup) findViewById(R.id.zoomedContainer),
+				new AdapterZoomController.ZoomedViewBinder() {
+					@Override
+					public void bindZoomedView(View zoomedInView, int position, long id) {
+						bindTile((TextView) zoomedInView, position);
+					}
+				})
+			.animationTime(getResources().getInteger(
+					android.R.integer.config_longAnimTime))
+			.bindToActivity(this)
+			.build();
+		grid.setOnItemClickListener(controller);
+	}
+
+	private void bindTile(TextView tile, int position) {
+		tile.setBackgroundColor(getResources().getColor(COLORS[position % COLORS.length]));
+		tile.setText(getString(R.string.grid_item_label, position + 1));
+	}
+
+	private class TileAdapter extends BaseAdapter {
+
+		@Override
+		public int getCount() {
+			return ITEM_COUNT;
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return null;
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			TextView tile = (TextView) convertView;
+			if (tile == null) {
+				tile = new TextView(GridZoomActivity.this);
+				tile.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+						(int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 96,
+								getResources().getDisplayMetrics())));
+				tile.setGravity(Gravity.CENTER);
+			}
+			bindTile(tile, position);
+			return tile;
+		}
+	}
+}
@@ -64,6 +64,8 @@ public class MainActivity extends ListActivity {
                 new Sample(R.string.title_crossfade, CrossfadeActivity.class),
                 new Sample(R.string.title_zoom, ZoomActivity.class),
                 new Sample(R.string.title_zoom_generic_view, GenericViewZoomActivity.class),
+                new Sample(R.string.title_zoom_grid, GridZoomActivity.class),
+                new Sample(R.string.title_multi_crossfade, MultiCrossfadeActivity.class),
         };
 
         setListAdapter(new ArrayAdapter<Sample>(this,
@@ -0,0 +1,93 @@
+package com.github.curioustechizen.doubletake.sample;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.github.curioustechizen.doubletake.MultiCrossfadeAnimation;
+
+/**
+ * Swaps the content of a whole grid of tiles with one {@link MultiCrossfadeAnimation}. Each tile has a front and a back view that overlap;
+ * the tiles turn one after the other, driven by a single animator however many tiles there are.
+ */
+public class MultiCrossfadeActivity extends Activity {
+
+	private static final int ROWS = 6;
+	private static final int COLUMNS = 4;
+	private static final int STAGGER_DELAY = 40;
+	private static final int[] COLORS = { R.color.holo_blue_bright, R.color.holo_red_dark,
+			R.color.holo_orange_light, R.color.holo_green_light };
+
+	private boolean mShowingBack;
+
+	/**
+	 * The two directions of the swap. Pressing the button mid-flight cancels the running one and starts the other.
+	 */
+	private MultiCrossfadeAnimation mShowBackAnimation;
+	private MultiCrossfadeAnimation mShowFrontAnimation;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_multi_crossfade);
+
+		final ViewGroup tiles = (ViewGroup) findViewById(R.id.tiles);
+		MultiCrossfadeAnimation.Builder showBack = null;
+		MultiCrossfadeAnimation.Builder showFront = null;
+		for (int row = 0; row < ROWS; row++) {
+			final LinearLayout rowLayout = new LinearLayout(this);
+			tiles.addView(rowLayout, new LinearLayout.LayoutParams(
+					ViewGroup.LayoutParams.MATCH_PARENT, 0, 1f));
+			for (int column = 0; column < COLUMNS; column++) {
+				final int index = row * COLUMNS + column;
+				final FrameLayout tile = new FrameLayout(this);
+				rowLayout.addView(tile, new LinearLayout.LayoutParams(
+						0, ViewGroup.LayoutParams.MATCH_PARENT, 1f));
+				final View front = addFace(tile, getString(R.string.tile_front_label, index + 1),
+						COLORS[index % COLORS.length]);
+				final View back = addFace(tile, getString(R.string.tile_back_label, index + 1),
+						COLORS[(index + 2) % COLORS.length]);
+				back.setVisibility(View.GONE);
+				if (showBack == null) {
+					showBack = new MultiCrossfadeAnimation.Builder(back, front);
+					showFront = new MultiCrossfadeAnimation.Builder(front, back);
+				} else {
+					showBack.add(back, front);
+					showFront.add(front, back);
+				}
+			}
+		}
+		mShowBackAnimation = showBack.staggerDelay(STAGGER_DELAY).build();
+		mShowFrontAnimation = showFront.staggerDelay(STAGGER_DELAY).build();
+
+		findViewById(R.id.swap).setOnClickListener(new OnClickListener() {
+			@Override
+			public void onClick(View v) {
+				mShowingBack = !mShowingBack;
+				if (mShowingBack) {
+					mShowFrontAnimation.cancel();
+					mShowBackAnimation.animate();
+				} else {
+					mShowBackAnimation.cancel();
+					mShowFrontAnimation.animate();
+				}
+			}
+		});
+	}
+
+	private TextView addFace(FrameLayout tile, String label, int colorResId) {
+		final TextView face = new TextView(this);
+		face.setGravity(Gravity.CENTER);
+		face.setText(label);
+		face.setBackgroundColor(getResources().getColor(colorResId));
+		tile.addView(face, new FrameLayout.LayoutParams(
+				ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		return face;
+	}
+}
@@ -23,7 +23,7 @@ import android.support.v4.app.NavUtils;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
+import android.view.ViewStub;
 
 import com.github.curioustechizen.doubletake.ZoomAnimation;
 
@@ -35,7 +35,12 @@ import com.github.curioustechizen.doubletake.ZoomAnimation;
  * the entire activity content area. Touching the zoomed-in image hides it.</p>
  */
 public class ZoomActivity extends FragmentActivity {
-   
+
+	private static final String STATE_ZOOM_1 = "zoom1";
+	private static final String STATE_ZOOM_2 = "zoom2";
+
+	private ZoomAnimation mZoomAnimation1;
+	private ZoomAnimation mZoomAnimation2;
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -45,41 +50,60 @@ public class ZoomActivity extends FragmentActivity {
 		
 		final ViewGroup container = (ViewGroup) findViewById(R.id.container);
 		final View thumb1View = findViewById(R.id.thumb_button_1);
-		
-		
+		final View thumb2View = findViewById(R.id.thumb_button_2);
+		final ViewStub expandedImageStub = (ViewStub) findViewById(R.id.expanded_image_stub);
+
+		// Build the animations once and reuse them for every click. The
+		// expanded image view is only inflated once a thumbnail is touched
+		// (the thumbnails have no touch listeners of their own), and the full images are decoded in the background while the zoom
+		// already runs with the thumbnail. The thumbnails themselves are
+		// generated from the full images and cached on disk, so the app
+		// ships one image each. Both animations are released when this
+		// activity is destroyed.
+		mZoomAnimation1 = new ZoomAnimation.Builder(
+				thumb1View, expandedImageStub, container)
+			.animationTime(getResources().getInteger(
+					android.R.integer.config_longAnimTime))
+			.fullImageResource(R.drawable.image1)
+			.generateThumbnail(true)
+			.prefetchOnTouch(true)
+			.bindToActivity(this)
+			.build();
+		mZoomAnimation2 = new ZoomAnimation.Builder(
+				thumb2View, expandedImageStub, container)
+			.fullImageResource(R.drawable.image2)
+			.generateThumbnail(true)
+			.prefetchOnTouch(true)
+			.bindToActivity(this)
+			.build();
+
+		// Come back zoomed in after a rotation, without animating again
+		mZoomAnimation1.restoreInstanceState(savedInstanceState, STATE_ZOOM_1);
+		mZoomAnimation2.restoreInstanceState(savedInstanceState, STATE_ZOOM_2);
+
 		// Hook up clicks on the thumbnail views.
 		thumb1View.setOnClickListener(new View.OnClickListener() {
 			@Override
 			public void onClick(View view) {
-				// zoomImageFromThumb(thumb1View, R.drawable.image1);
-				final ImageView expandedImageView1 = (ImageView) findViewById(R.id.expanded_image);
-				expandedImageView1.setImageResource(R.drawable.image1);
-
-				final ZoomAnimation zoomAnimation1 = new ZoomAnimation.Builder(
-						thumb1View, expandedImageView1, container)
-					.animationTime(getResources().getInteger(
-							android.R.integer.config_longAnimTime))
-					.build();
-				zoomAnimation1.zoomIn();
+				mZoomAnimation1.zoomIn();
 			}
 		});
-		
 
-		final View thumb2View = findViewById(R.id.thumb_button_2);
-		
-		
 		thumb2View.setOnClickListener(new View.OnClickListener() {
 			@Override
 			public void onClick(View view) {
-				final ImageView expandedImageView2 = (ImageView) findViewById(R.id.expanded_image);
-				final ZoomAnimation zoomAnimation2 = new ZoomAnimation.Builder(
-						thumb2View, expandedImageView2, container).build();
-				expandedImageView2.setImageResource(R.drawable.image2);
-				zoomAnimation2.zoomIn();
+				mZoomAnimation2.zoomIn();
 			}
 		});
 	}
 
+	@Override
+	protected void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		mZoomAnimation1.saveInstanceState(outState, STATE_ZOOM_1);
+		mZoomAnimation2.saveInstanceState(outState, STATE_ZOOM_2);
+	}
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
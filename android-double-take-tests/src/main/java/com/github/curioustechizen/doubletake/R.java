@@ -0,0 +1,23 @@
+package com.github.curioustechizen.doubletake;
+
+/**
+ * Stands in for the R class that the Android build generates from the library's resources, which this build does not process.
+ * Only the view tag ids are needed; their values only have to lie in the application package range. {@code RTest} checks that this class
+ * declares every id of {@code res/values/ids.xml}.
+ */
+public final class R {
+
+	private R() {
+	}
+
+	public static final class id {
+
+		public static final int doubletake_crossfade = 0x7f010000;
+		public static final int doubletake_image_key = 0x7f010001;
+		public static final int doubletake_covered = 0x7f010002;
+		public static final int doubletake_snapshot_overlay = 0x7f010003;
+
+		private id() {
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Checks that a zoom bound to its activity does not keep the activity alive once it is destroyed, whatever state the zoom was in.
+ * The static roots that could hold it are the running drivers of the shared engine and the requests waiting in {@link AnimationRequestQueue}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class ActivityLeakTest {
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+
+	@Before
+	public void setUp() {
+		mClock.install();
+	}
+
+	@After
+	public void tearDown() {
+		mClock.runToEnd();
+		mClock.uninstall();
+	}
+
+	/**
+	 * An activity with a zoom bound to it, and no other reference to the zoom
+	 */
+	private static ZoomAnimation createZoom(Activity activity) {
+		final FrameLayout container = new FrameLayout(activity);
+		final View zoomedOutView = new View(activity);
+		container.addView(zoomedOutView, new FrameLayout.LayoutParams(100, 100));
+		final View zoomedInView = new View(activity);
+		zoomedInView.setVisibility(View.GONE);
+		container.addView(zoomedInView);
+		activity.setContentView(container);
+		ShadowLooper.idleMainLooper();
+		return new ZoomAnimation.Builder(zoomedOutView, zoomedInView, container)
+				.animationTime(160)
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.bindToActivity(activity)
+				.build();
+	}
+
+	private static void assertCollected(WeakReference<?> reference) {
+		for (int i = 0; i < 20 && reference.get() != null; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+		assertNull("Still reachable after GC", reference.get());
+	}
+
+	private static final int ZOOMED_IN = 0;
+	private static final int ZOOMING_IN = 1;
+	private static final int ZOOM_REQUESTED = 2;
+	private static final int NO_ZOOM = 3;
+
+	/**
+	 * Run an activity with a zoom in the given state, and destroy it. Nothing in the calling frame refers to the activity afterwards.
+	 */
+	private WeakReference<Activity> runAndDestroy(int state) {
+		final ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).setup();
+		final Activity activity = controller.get();
+		if (state != NO_ZOOM) {
+			final ZoomAnimation zoom = createZoom(activity);
+			if (state == ZOOM_REQUESTED) {
+				AnimationRequestQueue.requestZoomIn(zoom);
+			} else {
+				zoom.zoomIn();
+				if (state == ZOOMED_IN) {
+					mClock.runToEnd();
+				} else {
+					mClock.step();
+					mClock.step();
+				}
+			}
+		}
+		controller.pause().stop().destroy();
+		// What ActivityThread does after onDestroy() on a device, and
+		// Robolectric does not. The window is torn down by a message, which
+		// must not run before removeView() has returned.
+		ShadowLooper.pauseMainLooper();
+		activity.getWindowManager().removeView(activity.getWindow().getDecorView());
+		ShadowLooper.unPauseMainLooper();
+		return new WeakReference<Activity>(activity);
+	}
+
+	@Test
+	public void activityWithoutZoomIsCollectable() {
+		assertCollected(runAndDestroy(NO_ZOOM));
+	}
+
+	@Test
+	public void activityIsCollectableAfterAZoom() {
+		assertCollected(runAndDestroy(ZOOMED_IN));
+	}
+
+	@Test
+	public void activityIsCollectableWhileZooming() {
+		final WeakReference<Activity> activity = runAndDestroy(ZOOMING_IN);
+		// Released by the binding, so no longer held by the engine
+		assertEquals(0, mClock.getRunningAnimationCount());
+		assertCollected(activity);
+	}
+
+	@Test
+	public void activityIsCollectableWithARequestPending() {
+		assertCollected(runAndDestroy(ZOOM_REQUESTED));
+	}
+}
@@ -0,0 +1,227 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.LinearInterpolator;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.FrameLayout;
+import android.widget.ListView;
+
+/**
+ * Steps the zooms of an {@link AdapterZoomController} on the {@link ManualFrameClock} and checks that they start from and return to the tapped item
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class AdapterZoomControllerTest {
+
+	private static final float DELTA = 0.01f;
+	// Ten frames of the clock
+	private static final int ANIMATION_TIME = 160;
+	private static final int ITEM_COUNT = 20;
+	private static final int ITEM_HEIGHT = 100;
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private ListView mListView;
+	private View mZoomedInView;
+	private FrameLayout mZoomedInContainer;
+	private AdapterZoomController mController;
+	// The positions and views bound by the controller, in order
+	private final int[] mBoundPositions = new int[ITEM_COUNT];
+	private final View[] mBoundViews = new View[ITEM_COUNT];
+	private int mBindCount;
+
+	@Before
+	public void setUp() {
+		// Follow this test's application, not the one of an earlier test
+		SystemAnimationSettingsTestHelper.reset();
+		final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+		// A 200x400 container holding a list of 200x100 items, and a hidden
+		// zoomed-in view filling it
+		final FrameLayout root = new FrameLayout(activity);
+		mZoomedInContainer = new FrameLayout(activity);
+		root.addView(mZoomedInContainer, new FrameLayout.LayoutParams(200, 400));
+		mListView = new ListView(activity);
+		mListView.setDivider(null);
+		mListView.setAdapter(new ItemAdapter());
+		mZoomedInContainer.addView(mListView, new FrameLayout.LayoutParams(200, 400));
+		mZoomedInView = new View(activity);
+		mZoomedInView.setVisibility(View.GONE);
+		mZoomedInContainer.addView(mZoomedInView, new FrameLayout.LayoutParams(200, 400));
+		activity.setContentView(root);
+		ShadowLooper.idleMainLooper();
+		// Robolectric never tells the view tree that its window is visible
+		ReflectionHelpers.setField(ReflectionHelpers.getField(mZoomedInContainer, "mAttachInfo"), "mWindowVisibility", View.VISIBLE);
+		// Like on a device, a layout requested now only happens in the next
+		// traversal, see traverse()
+		ShadowLooper.pauseMainLooper();
+		mClock.install();
+
+		// The list stays visible while zoomed in, so that it can be scrolled
+		mController = new AdapterZoomController.Builder(mListView, mZoomedInView, mZoomedInContainer,
+				new AdapterZoomController.ZoomedViewBinder() {
+					@Override
+					public void bindZoomedView(View zoomedInView, int position, long id) {
+						mBoundPositions[mBindCount] = position;
+						mBoundViews[mBindCount] = zoomedInView;
+						mBindCount++;
+					}
+				})
+				.zoomedOutContainer(null)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.scaleMode(ZoomGeometry.FIT_XY)
+				.build();
+		mListView.setOnItemClickListener(mController);
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+		mController.release();
+		SystemAnimationSettingsTestHelper.reset();
+	}
+
+	private static final class ItemAdapter extends BaseAdapter {
+
+		@Override
+		public int getCount() {
+			return ITEM_COUNT;
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return null;
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			if (convertView != null) {
+				return convertView;
+			}
+			final View view = new View(parent.getContext());
+			view.setLayoutParams(new AbsListView.LayoutParams(AbsListView.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+			return view;
+		}
+	}
+
+	/**
+	 * Run the traversal that a layout request scheduled, with its pre-draw pass
+	 */
+	private static void traverse() {
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+	}
+
+	/**
+	 * @return The view currently showing the given position
+	 */
+	private View itemView(int position) {
+		return mListView.getChildAt(position - mListView.getFirstVisiblePosition());
+	}
+
+	private void tap(int position) {
+		mListView.performItemClick(itemView(position), position, position);
+	}
+
+	/**
+	 * Fit XY: the 200x400 zoomed-in view is squeezed into a 200x100 item at the given top
+	 * @param fraction How far the zoomed-in view has come from the item to the container
+	 */
+	private void assertTransform(int itemTop, float fraction) {
+		assertEquals("x", 0f, mZoomedInView.getX(), DELTA);
+		assertEquals("y", itemTop * (1f - fraction), mZoomedInView.getY(), DELTA);
+		assertEquals("scaleX", 1f, mZoomedInView.getScaleX(), DELTA);
+		assertEquals("scaleY", 0.25f + 0.75f * fraction, mZoomedInView.getScaleY(), DELTA);
+	}
+
+	@Test
+	public void tapOnAnItemZoomsFromItsBounds() {
+		assertEquals(200, itemView(2).getTop());
+		tap(2);
+
+		assertEquals(1, mBindCount);
+		assertEquals(2, mBoundPositions[0]);
+		assertEquals(2, mController.getZoomedPosition());
+		assertEquals(View.VISIBLE, mZoomedInView.getVisibility());
+		assertEquals(0f, itemView(2).getAlpha(), 0f);
+		assertTransform(200, 0f);
+
+		// The first frame starts the clock
+		assertTrue(mClock.step());
+		mClock.advance(ANIMATION_TIME / 2);
+		assertTransform(200, 0.5f);
+		mClock.runToEnd();
+		assertTransform(0, 1f);
+	}
+
+	@Test
+	public void zoomOutAfterAScrollLandsOnTheItemsCurrentView() {
+		tap(2);
+		mClock.runToEnd();
+
+		// Position 1 half scrolled off the top, which puts position 2 at 50
+		mListView.setSelectionFromTop(1, -50);
+		traverse();
+		assertEquals(50, itemView(2).getTop());
+
+		// A click on the zoomed-in view goes through the controller
+		assertTrue(mZoomedInView.performClick());
+		assertEquals(AdapterView.INVALID_POSITION, mController.getZoomedPosition());
+		assertTrue(mClock.step());
+		mClock.advance(ANIMATION_TIME / 2);
+		assertTransform(50, 0.5f);
+		mClock.runToEnd();
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+		assertEquals(1f, itemView(2).getAlpha(), 0f);
+	}
+
+	@Test
+	public void oneZoomedInViewIsReusedAcrossItems() {
+		tap(1);
+		mClock.runToEnd();
+		final ZoomAnimation firstAnimation = ReflectionHelpers.getField(mController, "mZoomAnimation");
+		assertTrue(mZoomedInView.performClick());
+		mClock.runToEnd();
+
+		tap(3);
+		assertSame("One animation, re-targeted", firstAnimation, ReflectionHelpers.getField(mController, "mZoomAnimation"));
+		assertTransform(300, 0f);
+		mClock.runToEnd();
+		assertTrue(mZoomedInView.performClick());
+		mClock.runToEnd();
+
+		assertEquals(2, mBindCount);
+		assertEquals(1, mBoundPositions[0]);
+		assertEquals(3, mBoundPositions[1]);
+		assertSame(mZoomedInView, mBoundViews[0]);
+		assertSame(mZoomedInView, mBoundViews[1]);
+		assertNotSame(itemView(1), itemView(3));
+		// The list and the one zoomed-in view, nothing added per item
+		assertEquals(2, mZoomedInContainer.getChildCount());
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+	}
+}
@@ -0,0 +1,128 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowDisplay;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowPowerManager;
+import org.robolectric.util.ReflectionHelpers;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
+
+/**
+ * Checks that {@link AnimationPolicy#DEFAULT} follows the system settings through their change notifications, rather than reading them on every run
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class AnimationPolicyTest {
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private Activity mActivity;
+	private View mView;
+
+	@Before
+	public void setUp() {
+		// Follow this test's application, not the one of an earlier test
+		SystemAnimationSettingsTestHelper.reset();
+		mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+		final FrameLayout root = new FrameLayout(mActivity);
+		mView = new View(mActivity);
+		root.addView(mView, new FrameLayout.LayoutParams(100, 100));
+		mActivity.setContentView(root);
+		ShadowLooper.idleMainLooper();
+		// Robolectric never tells the view tree that its window is visible
+		ReflectionHelpers.setField(ReflectionHelpers.getField(mView, "mAttachInfo"), "mWindowVisibility", View.VISIBLE);
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+		SystemAnimationSettingsTestHelper.reset();
+	}
+
+	@Test
+	public void powerSaveModeIsFollowedThroughItsBroadcast() {
+		assertEquals(AnimationPolicy.FULL, AnimationPolicy.DEFAULT.decideFor(mView));
+
+		final PowerManager powerManager = (PowerManager) mActivity.getSystemService(Context.POWER_SERVICE);
+		((ShadowPowerManager) Shadow.extract(powerManager)).setIsPowerSaveMode(true);
+		assertEquals("Not asked again before the broadcast", AnimationPolicy.FULL, AnimationPolicy.DEFAULT.decideFor(mView));
+
+		mActivity.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+		ShadowLooper.idleMainLooper();
+		assertEquals(AnimationPolicy.REDUCED, AnimationPolicy.DEFAULT.decideFor(mView));
+	}
+
+	@Test
+	public void durationScaleIsFollowedThroughItsObserver() {
+		assertEquals(AnimationPolicy.FULL, AnimationPolicy.DEFAULT.decideFor(mView));
+
+		final ContentResolver resolver = mActivity.getContentResolver();
+		Settings.Global.putFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 0f);
+		resolver.notifyChange(Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE), null);
+		ShadowLooper.idleMainLooper();
+		assertEquals(AnimationPolicy.SKIP, AnimationPolicy.DEFAULT.decideFor(mView));
+		assertEquals(0f, SystemAnimationSettings.getDurationScale(), 0f);
+	}
+
+	@Test
+	public void droppedFramesAreCountedAgainstTheDisplayRefreshRate() {
+		((ShadowDisplay) Shadow.extract(ShadowDisplay.getDefaultDisplay())).setRefreshRate(120f);
+		final int[] droppedFrames = new int[1];
+		final AnimationPolicy policy = new AnimationPolicy() {
+			@Override
+			public boolean shouldDowngrade(int dropped) {
+				droppedFrames[0] = dropped;
+				return false;
+			}
+		};
+		final AnimationMetrics[] metrics = new AnimationMetrics[1];
+		final View in = new View(mActivity);
+		in.setVisibility(View.GONE);
+		((FrameLayout) mView.getParent()).addView(in);
+		// The metrics recorder follows the real Choreographer, so keep it from
+		// running frames of its own
+		ShadowLooper.pauseMainLooper();
+		mClock.install();
+		new CrossfadeAnimation.Builder(in, mView)
+				.animationTime(160)
+				.interpolator(new LinearInterpolator())
+				.policy(policy)
+				.metricsListener(new AnimationMetricsListener() {
+					@Override
+					public void onAnimationMetrics(AnimationMetrics animationMetrics) {
+						metrics[0] = animationMetrics;
+					}
+				})
+				.build()
+				.animate();
+
+		// Each 16 ms frame of the clock spans two refreshes at 120 Hz, so every
+		// frame after the first drops one
+		mClock.step();
+		for (int frame = 1; frame <= 5; frame++) {
+			mClock.step();
+			assertEquals(frame, droppedFrames[0]);
+		}
+		mClock.runToEnd();
+		assertEquals(1000000000L / 120, metrics[0].getFrameIntervalNanos());
+	}
+}
@@ -0,0 +1,171 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+/**
+ * Checks that {@link AnimationRequestQueue} runs only the last request per container, at the start of the next frame
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class AnimationRequestQueueTest {
+
+	// Ten frames of the clock
+	private static final int ANIMATION_TIME = 160;
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private LinearLayout mRoot;
+
+	@Before
+	public void setUp() {
+		final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+		mRoot = new LinearLayout(activity);
+		activity.setContentView(mRoot);
+		mClock.install();
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+	}
+
+	/**
+	 * Add a 200x400 container, laid out in the next {@link #layOut()}
+	 */
+	private FrameLayout addContainer() {
+		final FrameLayout container = new FrameLayout(mRoot.getContext());
+		mRoot.addView(container, new LinearLayout.LayoutParams(200, 400));
+		return container;
+	}
+
+	/**
+	 * @return A zoom in the container from a new 100x100 zoomed-out view at (20, 40) to a new zoomed-in view
+	 */
+	private ZoomAnimation addZoom(FrameLayout container) {
+		final View zoomedOutView = new View(container.getContext());
+		final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(100, 100);
+		params.leftMargin = 20;
+		params.topMargin = 40;
+		container.addView(zoomedOutView, params);
+		final View zoomedInView = new View(container.getContext());
+		zoomedInView.setVisibility(View.GONE);
+		container.addView(zoomedInView, new FrameLayout.LayoutParams(200, 400));
+		return new ZoomAnimation.Builder(zoomedOutView, zoomedInView, container)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build();
+	}
+
+	private static void layOut() {
+		ShadowLooper.idleMainLooper();
+		// Run the main thread's tasks only when asked to, see requests from a
+		// background thread below
+		ShadowLooper.pauseMainLooper();
+	}
+
+	@Test
+	public void onlyTheLastRequestForAContainerRunsAtTheNextFrame() throws InterruptedException {
+		final FrameLayout container = addContainer();
+		final ZoomAnimation first = addZoom(container);
+		final ZoomAnimation last = addZoom(container);
+		layOut();
+
+		// The first request comes from a background thread, which schedules
+		// the frame through the main thread's queue
+		final Thread background = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				AnimationRequestQueue.requestZoomIn(first);
+			}
+		});
+		background.start();
+		background.join();
+		AnimationRequestQueue.requestZoomIn(last);
+		ShadowLooper.runUiThreadTasks();
+		assertEquals("Nothing runs before the frame", View.GONE, first.getZoomedInView().getVisibility());
+		assertEquals("Nothing runs before the frame", View.GONE, last.getZoomedInView().getVisibility());
+		assertEquals(0, mClock.getRunningAnimationCount());
+
+		assertTrue(mClock.step());
+		assertEquals(View.GONE, first.getZoomedInView().getVisibility());
+		assertEquals(View.VISIBLE, last.getZoomedInView().getVisibility());
+		assertEquals(1, mClock.getRunningAnimationCount());
+		mClock.runToEnd();
+		assertEquals(1, mClock.getEndCallbackCount());
+		first.release();
+		last.release();
+	}
+
+	@Test
+	public void requestsForDifferentContainersAllRun() {
+		final ZoomAnimation left = addZoom(addContainer());
+		final ZoomAnimation right = addZoom(addContainer());
+		layOut();
+
+		AnimationRequestQueue.requestZoomIn(left);
+		AnimationRequestQueue.requestZoomIn(right);
+		assertEquals(0, mClock.getRunningAnimationCount());
+		assertTrue(mClock.step());
+		assertEquals(2, mClock.getRunningAnimationCount());
+		mClock.runToEnd();
+
+		AnimationRequestQueue.requestZoomOut(left);
+		AnimationRequestQueue.requestZoomOut(right);
+		mClock.runToEnd();
+		assertEquals(View.GONE, left.getZoomedInView().getVisibility());
+		assertEquals(View.GONE, right.getZoomedInView().getVisibility());
+		assertEquals(4, mClock.getEndCallbackCount());
+		left.release();
+		right.release();
+	}
+
+	@Test
+	public void requestsAreRecycled() {
+		final ZoomAnimation zoom = addZoom(addContainer());
+		layOut();
+		final Runnable requestZoomIn = new Runnable() {
+			@Override
+			public void run() {
+				AnimationRequestQueue.requestZoomIn(zoom);
+			}
+		};
+		final Runnable requestZoomOut = new Runnable() {
+			@Override
+			public void run() {
+				AnimationRequestQueue.requestZoomOut(zoom);
+			}
+		};
+		mClock.setCountAllocations(true);
+		for (int cycle = 0; cycle < 3; cycle++) {
+			requestZoomIn.run();
+			mClock.runToEnd();
+			requestZoomOut.run();
+			mClock.runToEnd();
+		}
+
+		assertEquals(0, mClock.countAllocatedBytes(requestZoomIn));
+		mClock.runToEnd();
+		assertEquals(0, mClock.countAllocatedBytes(requestZoomOut));
+		mClock.runToEnd();
+		assertEquals(View.GONE, zoom.getZoomedInView().getVisibility());
+		zoom.release();
+	}
+}
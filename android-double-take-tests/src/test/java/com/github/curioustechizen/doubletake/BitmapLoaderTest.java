@@ -0,0 +1,35 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+
+/**
+ * Checks that the cache keys of {@link BitmapLoader} tell the variants of a resource apart
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class BitmapLoaderTest {
+
+	@Test
+	public void configurationKeyIsReusedUntilTheConfigurationChanges() {
+		final Resources res = RuntimeEnvironment.application.getResources();
+		final String day = BitmapLoader.configurationKey(res);
+		assertSame("No new key for the same configuration", day, BitmapLoader.configurationKey(res));
+
+		final Configuration night = new Configuration(res.getConfiguration());
+		night.uiMode = (night.uiMode & ~Configuration.UI_MODE_NIGHT_MASK) | Configuration.UI_MODE_NIGHT_YES;
+		res.updateConfiguration(night, res.getDisplayMetrics());
+		final String nightKey = BitmapLoader.configurationKey(res);
+		assertFalse(day.equals(nightKey));
+		assertFalse(BitmapLoader.resourceKey(1, 100, 100, day).equals(BitmapLoader.resourceKey(1, 100, 100, nightKey)));
+	}
+}
@@ -0,0 +1,219 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Paint;
+import android.provider.Settings;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
+
+/**
+ * Steps crossfades frame by frame on the {@link ManualFrameClock} and checks the alphas of every frame
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class CrossfadeSteppingTest {
+
+	private static final float DELTA = 0.001f;
+	// Ten frames of the clock
+	private static final int ANIMATION_TIME = 160;
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private FrameLayout mContainer;
+
+	@Before
+	public void setUp() {
+		mContainer = new FrameLayout(RuntimeEnvironment.application);
+		mClock.install();
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+	}
+
+	private View addView(int visibility) {
+		final View view = new View(mContainer.getContext());
+		view.setVisibility(visibility);
+		mContainer.addView(view);
+		return view;
+	}
+
+	/**
+	 * A view that takes hardware layers, which Robolectric's views never do: they are not accelerated, and their native render node ignores the layer type
+	 */
+	private View addAcceleratedView(int visibility) {
+		final View view = new View(mContainer.getContext()) {
+			private int mLayerType = LAYER_TYPE_NONE;
+
+			@Override
+			public boolean isHardwareAccelerated() {
+				return true;
+			}
+
+			@Override
+			public void setLayerType(int layerType, Paint paint) {
+				mLayerType = layerType;
+			}
+
+			@Override
+			public int getLayerType() {
+				return mLayerType;
+			}
+		};
+		view.setVisibility(visibility);
+		mContainer.addView(view);
+		return view;
+	}
+
+	@Test
+	public void crossfadeStepsBothAlphas() {
+		final View in = addView(View.GONE);
+		final View out = addView(View.VISIBLE);
+		new CrossfadeAnimation.Builder(in, out)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build()
+				.animate();
+
+		assertEquals(View.VISIBLE, in.getVisibility());
+		assertEquals(0f, in.getAlpha(), 0f);
+		assertTrue(mClock.step());
+		for (int frame = 1; frame <= 10; frame++) {
+			assertTrue(mClock.step());
+			assertEquals(frame / 10f, in.getAlpha(), DELTA);
+			assertEquals(1f - frame / 10f, out.getAlpha(), DELTA);
+			assertEquals(frame < 10 ? View.VISIBLE : View.GONE, out.getVisibility());
+		}
+		assertFalse(mClock.step());
+
+		assertEquals(11, mClock.getFrameCallbackCount());
+		assertEquals(1, mClock.getEndCallbackCount());
+	}
+
+	@Test
+	public void durationsFollowTheAnimatorDurationScale() {
+		Settings.Global.putFloat(RuntimeEnvironment.application.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 2f);
+		SystemAnimationSettingsTestHelper.reset();
+		// The metrics recorder follows the real Choreographer, so keep it from
+		// running frames of its own
+		ShadowLooper.pauseMainLooper();
+		try {
+			final View in = addView(View.GONE);
+			final View out = addView(View.VISIBLE);
+			final AnimationMetrics[] metrics = new AnimationMetrics[1];
+			new CrossfadeAnimation.Builder(in, out)
+					.animationTime(ANIMATION_TIME)
+					.interpolator(new LinearInterpolator())
+					.policy(AnimationPolicy.ALWAYS_FULL)
+					.metricsListener(new AnimationMetricsListener() {
+						@Override
+						public void onAnimationMetrics(AnimationMetrics animationMetrics) {
+							metrics[0] = animationMetrics;
+						}
+					})
+					.build()
+					.animate();
+
+			mClock.step();
+			mClock.advance(ANIMATION_TIME);
+			assertEquals(0.5f, in.getAlpha(), DELTA);
+			mClock.runToEnd();
+			assertEquals(21, mClock.getFrameCallbackCount());
+			assertEquals("Planned as run", 2 * ANIMATION_TIME, metrics[0].getPlannedDurationMillis());
+		} finally {
+			ShadowLooper.unPauseMainLooper();
+			Settings.Global.putFloat(RuntimeEnvironment.application.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+			SystemAnimationSettingsTestHelper.reset();
+		}
+	}
+
+	@Test
+	public void multiCrossfadeStaggersThePairsAndEndsThemInOneFrame() {
+		final View in1 = addView(View.GONE);
+		final View out1 = addView(View.VISIBLE);
+		final View in2 = addView(View.GONE);
+		final View out2 = addView(View.VISIBLE);
+		// 160 ms per pair, the second starting 80 ms after the first: 240 ms,
+		// or 15 frames in all
+		new MultiCrossfadeAnimation.Builder(in1, out1)
+				.add(in2, out2)
+				.animationTime(ANIMATION_TIME)
+				.staggerDelay(ANIMATION_TIME / 2)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build()
+				.animate();
+
+		mClock.step();
+		mClock.advance(ANIMATION_TIME / 2);
+		assertEquals(0.5f, in1.getAlpha(), DELTA);
+		assertEquals(0.5f, out1.getAlpha(), DELTA);
+		assertEquals(0f, in2.getAlpha(), DELTA);
+		assertEquals(1f, out2.getAlpha(), DELTA);
+
+		mClock.advance(ANIMATION_TIME / 2);
+		assertEquals(1f, in1.getAlpha(), DELTA);
+		assertEquals(0.5f, in2.getAlpha(), DELTA);
+		assertEquals(0.5f, out2.getAlpha(), DELTA);
+		// Both out-views are hidden together at the very end
+		assertEquals(View.VISIBLE, out1.getVisibility());
+
+		mClock.runToEnd();
+		assertEquals(1f, in2.getAlpha(), DELTA);
+		assertEquals(View.GONE, out1.getVisibility());
+		assertEquals(View.GONE, out2.getVisibility());
+		// One driver for both pairs
+		assertEquals(16, mClock.getFrameCallbackCount());
+		assertEquals(1, mClock.getEndCallbackCount());
+	}
+
+	@Test
+	public void multiCrossfadeKeepsEachPairOnLayersForItsOwnSpan() {
+		final View in1 = addAcceleratedView(View.GONE);
+		final View out1 = addAcceleratedView(View.VISIBLE);
+		final View in2 = addAcceleratedView(View.GONE);
+		final View out2 = addAcceleratedView(View.VISIBLE);
+		new MultiCrossfadeAnimation.Builder(in1, out1)
+				.add(in2, out2)
+				.animationTime(ANIMATION_TIME)
+				.staggerDelay(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.hardwareLayer(true)
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build()
+				.animate();
+		assertEquals("Nothing before the first frame", View.LAYER_TYPE_NONE, in1.getLayerType());
+
+		mClock.step();
+		mClock.advance(ANIMATION_TIME / 2);
+		assertEquals(View.LAYER_TYPE_HARDWARE, in1.getLayerType());
+		assertEquals(View.LAYER_TYPE_HARDWARE, out1.getLayerType());
+		assertEquals(View.LAYER_TYPE_NONE, in2.getLayerType());
+
+		mClock.advance(ANIMATION_TIME);
+		assertEquals(View.LAYER_TYPE_NONE, in1.getLayerType());
+		assertEquals(View.LAYER_TYPE_NONE, out1.getLayerType());
+		assertEquals(View.LAYER_TYPE_HARDWARE, in2.getLayerType());
+		assertEquals(View.LAYER_TYPE_HARDWARE, out2.getLayerType());
+
+		mClock.runToEnd();
+		assertEquals(View.LAYER_TYPE_NONE, in2.getLayerType());
+		assertEquals(View.LAYER_TYPE_NONE, out2.getLayerType());
+	}
+}
@@ -0,0 +1,197 @@
+package com.github.curioustechizen.doubletake;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A virtual clock that drives all double-take animations frame by frame. While installed, animations no longer follow the display:
+ * they only advance when {@link #step()} or {@link #advance(long)} is called, by exactly the time given. Intermediate property values are therefore
+ * the same on every run.
+ * <p>
+ * The clock also counts what happens in its frames: the frames run, the frame callbacks delivered to animations and the end callbacks batched by the ticker,
+ * and optionally the bytes allocated on the calling thread during the last frame.
+ * <p>
+ * Use it from the thread the animations run on, the main thread under Robolectric, and {@link #uninstall()} it when done.
+ */
+final class ManualFrameClock {
+
+	/**
+	 * The frame interval used by {@link #step()}: a 60 Hz display
+	 */
+	static final long DEFAULT_FRAME_INTERVAL_MILLIS = 16;
+
+	// Guards runToEnd() against an animation that never ends
+	private static final int MAX_FRAMES = 100000;
+
+	private final AnimationEngine mEngine = AnimationEngine.getInstance();
+	private long mNowNanos;
+	private boolean mFramePending;
+	private com.sun.management.ThreadMXBean mAllocationCounter;
+	private long mLastFrameAllocatedBytes;
+
+	private final AnimationEngine.FrameSource mFrameSource = new AnimationEngine.FrameSource() {
+		@Override
+		public void postFrame() {
+			mFramePending = true;
+		}
+	};
+
+	/**
+	 * Take over the frames of all double-take animations, including the ones already running. Counters are reset.
+	 */
+	void install() {
+		mEngine.resetCounters();
+		mEngine.setFrameSource(mFrameSource);
+	}
+
+	/**
+	 * Give the frames back to the display
+	 */
+	void uninstall() {
+		mFramePending = false;
+		mEngine.setFrameSource(null);
+	}
+
+	/**
+	 * Advance time by {@link #DEFAULT_FRAME_INTERVAL_MILLIS} and run a frame if one is pending
+	 * @return Whether a frame was run
+	 */
+	boolean step() {
+		return step(DEFAULT_FRAME_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Advance time by the given interval and run a frame if one is pending. The first frame of an animation starts its clock,
+	 * so the frame after that is the first to show any progress.
+	 * @param frameIntervalMillis The time since the previous frame
+	 * @return Whether a frame was run
+	 */
+	boolean step(long frameIntervalMillis) {
+		mNowNanos += frameIntervalMillis * 1000000L;
+		if (!mFramePending) {
+			return false;
+		}
+		mFramePending = false;
+		if (mAllocationCounter != null) {
+			final long before = getAllocatedBytes();
+			mEngine.doFrame(mNowNanos);
+			mLastFrameAllocatedBytes = getAllocatedBytes() - before;
+		} else {
+			mEngine.doFrame(mNowNanos);
+		}
+		return true;
+	}
+
+	/**
+	 * Run frames at the default interval until the given time has passed
+	 * @param millis The time to advance by
+	 * @return The number of frames run
+	 */
+	int advance(long millis) {
+		int frames = 0;
+		for (long elapsed = 0; elapsed < millis; elapsed += DEFAULT_FRAME_INTERVAL_MILLIS) {
+			if (step(Math.min(DEFAULT_FRAME_INTERVAL_MILLIS, millis - elapsed))) {
+				frames++;
+			}
+		}
+		return frames;
+	}
+
+	/**
+	 * Run frames at the default interval until no animation is running any more
+	 * @return The number of frames run
+	 * @throws IllegalStateException If the animations are still running after a very large number of frames
+	 */
+	int runToEnd() {
+		int frames = 0;
+		while (mFramePending) {
+			if (frames == MAX_FRAMES) {
+				throw new IllegalStateException("Animations still running after " + MAX_FRAMES + " frames");
+			}
+			step();
+			frames++;
+		}
+		return frames;
+	}
+
+	/**
+	 * @return The virtual time in nanoseconds. Starts at 0 and only moves when this clock is stepped.
+	 */
+	long getTimeNanos() {
+		return mNowNanos;
+	}
+
+	/**
+	 * @return The number of animations currently running
+	 */
+	int getRunningAnimationCount() {
+		return mEngine.getActiveCount();
+	}
+
+	/**
+	 * @return The number of frames run since {@link #install()} or {@link #resetCounters()}
+	 */
+	long getFrameCount() {
+		return mEngine.getFrameCount();
+	}
+
+	/**
+	 * @return The number of per-frame callbacks delivered to animations since {@link #install()} or {@link #resetCounters()}
+	 */
+	long getFrameCallbackCount() {
+		return mEngine.getFrameCallbackCount();
+	}
+
+	/**
+	 * @return The number of end-of-animation callbacks dispatched at the end of frames since {@link #install()} or {@link #resetCounters()}.
+	 * Cancelled animations and animations ended early by their policy are not counted.
+	 */
+	long getEndCallbackCount() {
+		return mEngine.getEndCallbackCount();
+	}
+
+	/**
+	 * Set the frame and callback counters back to 0
+	 */
+	void resetCounters() {
+		mEngine.resetCounters();
+	}
+
+	/**
+	 * Count the bytes allocated on the calling thread during each frame, see {@link #getLastFrameAllocatedBytes()}. Uses the per-thread
+	 * allocation counter of the HotSpot {@code ThreadMXBean}. Default is {@code false}.
+	 */
+	void setCountAllocations(boolean countAllocations) {
+		if (!countAllocations) {
+			mAllocationCounter = null;
+			return;
+		}
+		mAllocationCounter = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		mAllocationCounter.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * @return The number of bytes allocated during the last frame, if allocations are being counted
+	 */
+	long getLastFrameAllocatedBytes() {
+		return mLastFrameAllocatedBytes;
+	}
+
+	/**
+	 * Run some code outside of a frame, such as the call that starts an animation, and count the bytes it allocates on the calling thread.
+	 * Requires allocations to be counted, see {@link #setCountAllocations(boolean)}.
+	 * @param code The code to run
+	 * @return The number of bytes allocated while running it
+	 */
+	long countAllocatedBytes(Runnable code) {
+		if (mAllocationCounter == null) {
+			throw new IllegalStateException("Allocations are not being counted");
+		}
+		final long before = getAllocatedBytes();
+		code.run();
+		return getAllocatedBytes() - before;
+	}
+
+	private long getAllocatedBytes() {
+		return mAllocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,33 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Keeps the stand-in {@link R} class in step with the library's resources
+ */
+public class RTest {
+
+	private static final Pattern ID = Pattern.compile("<item\\s+name=\"(\\w+)\"\\s+type=\"id\"");
+
+	@Test
+	public void declaresEveryLibraryId() throws Exception {
+		final String ids = new String(Files.readAllBytes(new File("../android-double-take/res/values/ids.xml").toPath()),
+				StandardCharsets.UTF_8);
+		final Matcher matcher = ID.matcher(ids);
+		int count = 0;
+		while (matcher.find()) {
+			assertNotNull(matcher.group(1), R.id.class.getField(matcher.group(1)));
+			count++;
+		}
+		assertTrue("No ids found in ids.xml", count > 0);
+	}
+}
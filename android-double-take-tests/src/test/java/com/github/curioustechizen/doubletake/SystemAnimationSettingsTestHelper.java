@@ -0,0 +1,24 @@
+package com.github.curioustechizen.doubletake;
+
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Test-only access to the cache of {@link SystemAnimationSettings}, which lives for the whole JVM while Robolectric gives every test a new application
+ */
+final class SystemAnimationSettingsTestHelper {
+
+	private SystemAnimationSettingsTestHelper() {
+	}
+
+	/**
+	 * Forget the settings, so that the next {@code init(Context)} reads them again from the current test's application. The observers registered on the
+	 * previous one go away with it.
+	 */
+	static void reset() {
+		ReflectionHelpers.setStaticField(SystemAnimationSettings.class, "sContext", null);
+		ReflectionHelpers.setStaticField(SystemAnimationSettings.class, "sDurationScale", 1f);
+		ReflectionHelpers.setStaticField(SystemAnimationSettings.class, "sPowerSaveMode", false);
+		ReflectionHelpers.setStaticField(SystemAnimationSettings.class, "sFrameIntervalNanos",
+				ReflectionHelpers.<Long>getStaticField(SystemAnimationSettings.class, "DEFAULT_FRAME_INTERVAL_NANOS"));
+	}
+}
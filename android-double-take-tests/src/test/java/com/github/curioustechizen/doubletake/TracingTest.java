@@ -0,0 +1,171 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
+
+/**
+ * Records the trace sections of zooms and crossfades with a {@link RecordingTracer} and checks their counts and nesting
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class TracingTest {
+
+	// Ten frames of the clock
+	private static final int ANIMATION_TIME = 160;
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private final RecordingTracer mTracer = new RecordingTracer();
+	private Activity mActivity;
+	private View mZoomedOutView;
+	private View mZoomedInView;
+	private FrameLayout mZoomedInContainer;
+
+	@Before
+	public void setUp() {
+		mActivity = Robolectric.buildActivity(Activity.class).setup().get();
+		final FrameLayout root = new FrameLayout(mActivity);
+		// A 200x400 container with a 100x100 zoomed-out view at (20, 40)
+		mZoomedInContainer = new FrameLayout(mActivity);
+		root.addView(mZoomedInContainer, new FrameLayout.LayoutParams(200, 400));
+		mZoomedOutView = new View(mActivity);
+		final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(100, 100);
+		params.leftMargin = 20;
+		params.topMargin = 40;
+		mZoomedInContainer.addView(mZoomedOutView, params);
+		mZoomedInView = new View(mActivity);
+		mZoomedInView.setVisibility(View.GONE);
+		mZoomedInContainer.addView(mZoomedInView, new FrameLayout.LayoutParams(200, 400));
+		mActivity.setContentView(root);
+		ShadowLooper.idleMainLooper();
+		ShadowLooper.pauseMainLooper();
+		mClock.install();
+		Tracing.setTracer(mTracer);
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+		Tracing.setTracer(null);
+	}
+
+	private ZoomAnimation buildZoom() {
+		return new ZoomAnimation.Builder(mZoomedOutView, mZoomedInView, mZoomedInContainer)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build();
+	}
+
+	private CrossfadeAnimation buildCrossfade(View in, View out) {
+		return new CrossfadeAnimation.Builder(in, out)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL)
+				.build();
+	}
+
+	@Test
+	public void zoomInNestsTheGeometryInsideIt() {
+		final ZoomAnimation animation = buildZoom();
+		animation.zoomIn();
+
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_IN));
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_INIT));
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_INIT, Tracing.ZOOM_IN));
+		assertEquals(2, mTracer.getMaxDepth());
+		assertEquals(0, mTracer.getOpenCount());
+
+		mClock.runToEnd();
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_END));
+		assertEquals(0, mTracer.getCount(Tracing.ZOOM_CANCEL));
+		assertEquals(0, mTracer.getOpenCount());
+
+		animation.zoomOut();
+		mClock.runToEnd();
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_OUT));
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_INIT, Tracing.ZOOM_OUT));
+		assertEquals(2, mTracer.getCount(Tracing.ZOOM_END));
+		assertEquals(0, mTracer.getOpenCount());
+		animation.release();
+	}
+
+	@Test
+	public void zoomInInterruptingAZoomOutCancelsItInsideTheZoomIn() {
+		final ZoomAnimation animation = buildZoom();
+		animation.zoomIn();
+		mClock.runToEnd();
+		animation.zoomOut();
+		assertTrue(mClock.step());
+		mClock.advance(ANIMATION_TIME / 2);
+		mTracer.clear();
+
+		animation.zoomIn();
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_CANCEL));
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_CANCEL, Tracing.ZOOM_IN));
+		assertEquals(0, mTracer.getCount(Tracing.ZOOM_END));
+		assertEquals(0, mTracer.getOpenCount());
+
+		mClock.runToEnd();
+		assertEquals(1, mTracer.getCount(Tracing.ZOOM_END));
+		assertEquals(0, mTracer.getOpenCount());
+		animation.release();
+	}
+
+	@Test
+	public void crossfadeSectionsAreCountedPerRun() {
+		final FrameLayout container = new FrameLayout(mActivity);
+		final View in = new View(mActivity);
+		in.setVisibility(View.GONE);
+		container.addView(in);
+		final View out = new View(mActivity);
+		container.addView(out);
+		final CrossfadeAnimation showIn = buildCrossfade(in, out);
+		final CrossfadeAnimation showOut = buildCrossfade(out, in);
+
+		showIn.animate();
+		assertEquals(1, mTracer.getCount(Tracing.CROSSFADE_ANIMATE));
+		assertEquals(0, mTracer.getOpenCount());
+		mClock.runToEnd();
+		assertEquals(1, mTracer.getCount(Tracing.CROSSFADE_END));
+		assertEquals(0, mTracer.getCount(Tracing.CROSSFADE_CANCEL));
+		assertEquals(0, mTracer.getOpenCount());
+
+		// Taking over a running crossfade cancels it from inside animate()
+		showOut.animate();
+		assertTrue(mClock.step());
+		mClock.advance(ANIMATION_TIME / 2);
+		showIn.animate();
+		assertEquals(3, mTracer.getCount(Tracing.CROSSFADE_ANIMATE));
+		assertEquals(1, mTracer.getCount(Tracing.CROSSFADE_CANCEL, Tracing.CROSSFADE_ANIMATE));
+		assertEquals(0, mTracer.getOpenCount());
+		mClock.runToEnd();
+		assertEquals(2, mTracer.getCount(Tracing.CROSSFADE_END));
+
+		// An explicit cancel() is a section of its own
+		showOut.animate();
+		assertTrue(mClock.step());
+		showOut.cancel();
+		assertEquals(2, mTracer.getCount(Tracing.CROSSFADE_CANCEL));
+		assertEquals(1, mTracer.getCount(Tracing.CROSSFADE_CANCEL, Tracing.CROSSFADE_ANIMATE));
+		mClock.runToEnd();
+		assertEquals(4, mTracer.getCount(Tracing.CROSSFADE_ANIMATE));
+		assertEquals(2, mTracer.getCount(Tracing.CROSSFADE_END));
+		assertEquals(0, mTracer.getOpenCount());
+	}
+}
@@ -0,0 +1,562 @@
+package com.github.curioustechizen.doubletake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowView;
+import org.robolectric.util.ReflectionHelpers;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.LinearInterpolator;
+import android.widget.FrameLayout;
+
+/**
+ * Steps a zoom frame by frame on the {@link ManualFrameClock} and checks the transform of every frame
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = Config.NONE)
+public class ZoomAnimationSteppingTest {
+
+	private static final float DELTA = 0.01f;
+	// Ten frames of the clock
+	private static final int ANIMATION_TIME = 160;
+
+	private final ManualFrameClock mClock = new ManualFrameClock();
+	private CountingView mZoomedOutView;
+	private View mZoomedInView;
+	private FrameLayout mZoomedInContainer;
+
+	@Before
+	public void setUp() {
+		// A 200x400 container with a 100x100 zoomed-out view at (20, 40)
+		createViews(Robolectric.buildActivity(Activity.class).setup().get(), 20, 40);
+		ShadowLooper.idleMainLooper();
+		// Like on a device, a layout requested now only happens in the next
+		// traversal, see traverse()
+		ShadowLooper.pauseMainLooper();
+		mClock.install();
+	}
+
+	/**
+	 * Create the views and set them as the content of the activity: a 200x400 container with a 100x100 zoomed-out view at the given position,
+	 * and a hidden zoomed-in view
+	 */
+	private void createViews(Activity activity, int zoomedOutLeft, int zoomedOutTop) {
+		final FrameLayout root = new FrameLayout(activity);
+		mZoomedInContainer = new FrameLayout(activity);
+		root.addView(mZoomedInContainer, new FrameLayout.LayoutParams(200, 400));
+		mZoomedOutView = new CountingView(activity);
+		final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(100, 100);
+		params.leftMargin = zoomedOutLeft;
+		params.topMargin = zoomedOutTop;
+		mZoomedInContainer.addView(mZoomedOutView, params);
+		mZoomedInView = new View(activity);
+		mZoomedInView.setVisibility(View.GONE);
+		mZoomedInContainer.addView(mZoomedInView, new FrameLayout.LayoutParams(200, 400));
+		activity.setContentView(root);
+	}
+
+	@After
+	public void tearDown() {
+		// The engine outlives the test, so leave nothing running for the next
+		mClock.runToEnd();
+		mClock.uninstall();
+	}
+
+	/**
+	 * A view that counts how often its global visible rectangle is computed
+	 */
+	private static class CountingView extends View {
+
+		int globalVisibleRectCount;
+
+		CountingView(Context context) {
+			super(context);
+		}
+
+		@Override
+		public boolean getGlobalVisibleRect(Rect r, Point globalOffset) {
+			globalVisibleRectCount++;
+			return super.getGlobalVisibleRect(r, globalOffset);
+		}
+	}
+
+	/**
+	 * Run the traversal that a layout request scheduled, with its pre-draw pass
+	 */
+	private static void traverse() {
+		ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+	}
+
+	private ZoomAnimation.Builder builder() {
+		return new ZoomAnimation.Builder(mZoomedOutView, mZoomedInView, mZoomedInContainer)
+				.animationTime(ANIMATION_TIME)
+				.interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL);
+	}
+
+	private void assertTransform(float x, float y, float scale) {
+		assertEquals("x", x, mZoomedInView.getX(), DELTA);
+		assertEquals("y", y, mZoomedInView.getY(), DELTA);
+		assertEquals("scaleX", scale, mZoomedInView.getScaleX(), DELTA);
+		assertEquals("scaleY", scale, mZoomedInView.getScaleY(), DELTA);
+	}
+
+	@Test
+	public void zoomInStepsFromTheZoomedOutViewToTheContainer() {
+		final ZoomAnimation animation = builder().build();
+		animation.zoomIn();
+
+		// Center crop: the 200x400 view is scaled by 1/2 to cover the 100x100
+		// square, overflowing it by 50 pixels at the top and the bottom
+		assertTransform(20f, -10f, 0.5f);
+		assertEquals(View.VISIBLE, mZoomedInView.getVisibility());
+		assertEquals(0f, mZoomedOutView.getAlpha(), 0f);
+		assertEquals(1, mClock.getRunningAnimationCount());
+
+		// The first frame starts the clock
+		assertTrue(mClock.step());
+		assertTransform(20f, -10f, 0.5f);
+		for (int frame = 1; frame <= 10; frame++) {
+			assertTrue(mClock.step());
+			final float fraction = frame / 10f;
+			assertTransform(20f - 20f * fraction, -10f + 10f * fraction, 0.5f + 0.5f * fraction);
+		}
+		assertFalse("No frame after the end", mClock.step());
+
+		assertEquals(11, mClock.getFrameCount());
+		assertEquals(11, mClock.getFrameCallbackCount());
+		assertEquals(1, mClock.getEndCallbackCount());
+		assertEquals(0, mClock.getRunningAnimationCount());
+		animation.release();
+	}
+
+	@Test
+	public void zoomOutStepsBackToTheZoomedOutView() {
+		final ZoomAnimation animation = builder().build();
+		animation.zoomIn();
+		mClock.runToEnd();
+		mClock.resetCounters();
+
+		animation.zoomOut();
+		assertTrue(mClock.step());
+		assertTransform(0f, 0f, 1f);
+		mClock.advance(ANIMATION_TIME / 2);
+		assertTransform(10f, -5f, 0.75f);
+		mClock.runToEnd();
+
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+		assertEquals(1f, mZoomedOutView.getAlpha(), 0f);
+		assertEquals(11, mClock.getFrameCallbackCount());
+		assertEquals(1, mClock.getEndCallbackCount());
+		animation.release();
+	}
+
+	@Test
+	public void zoomOutMidwayReversesFromTheCurrentTransform() {
+		final ZoomAnimation animation = builder().build();
+		animation.zoomIn();
+		mClock.step();
+		mClock.advance(ANIMATION_TIME / 2);
+		assertTransform(10f, -5f, 0.75f);
+
+		animation.zoomOut();
+		mClock.step();
+		assertTransform(10f, -5f, 0.75f);
+		mClock.advance(ANIMATION_TIME / 2);
+		assertTransform(15f, -7.5f, 0.625f);
+		mClock.runToEnd();
+		assertTransform(20f, -10f, 0.5f);
+		// The cancelled zoom-in ends synchronously, not in a frame
+		assertEquals(1, mClock.getEndCallbackCount());
+		animation.release();
+	}
+
+	@Test
+	public void zoomInWaitsForAPendingLayout() {
+		final ZoomAnimation animation = builder().deferUntilLaidOut(true).build();
+		mZoomedOutView.requestLayout();
+		animation.zoomIn();
+		assertEquals(0, mClock.getRunningAnimationCount());
+
+		traverse();
+		assertEquals(1, mClock.getRunningAnimationCount());
+		assertTransform(20f, -10f, 0.5f);
+		mClock.runToEnd();
+		assertTransform(0f, 0f, 1f);
+		animation.release();
+	}
+
+	@Test
+	public void switchWaitsUntilACreatedZoomedInViewIsLaidOut() {
+		final ZoomAnimation current = builder().build();
+		// A second 100x100 zoomed-out view at (80, 240), whose zoomed-in view
+		// is only created when switched to
+		final View otherZoomedOutView = new View(mZoomedInContainer.getContext());
+		final FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(100, 100);
+		params.leftMargin = 80;
+		params.topMargin = 240;
+		mZoomedInContainer.addView(otherZoomedOutView, params);
+		final View[] created = new View[1];
+		final ZoomAnimation other = new ZoomAnimation.Builder(otherZoomedOutView, new ZoomAnimation.ZoomedViewFactory() {
+			@Override
+			public View createZoomedInView(ViewGroup zoomedInContainer) {
+				created[0] = new View(zoomedInContainer.getContext());
+				return created[0];
+			}
+		}, mZoomedInContainer).animationTime(ANIMATION_TIME).interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL).build();
+		final ContainerZoomController controller = new ContainerZoomController.Builder(mZoomedInContainer)
+				.animationTime(ANIMATION_TIME).interpolator(new LinearInterpolator())
+				.policy(AnimationPolicy.ALWAYS_FULL).build();
+		controller.zoomIn(current);
+		traverse();
+		mClock.runToEnd();
+
+		controller.zoomIn(other);
+		assertEquals(0, mClock.getRunningAnimationCount());
+		assertEquals("Laid out in the coming traversal", View.INVISIBLE, created[0].getVisibility());
+
+		traverse();
+		assertEquals(1, mClock.getRunningAnimationCount());
+		assertEquals(200, created[0].getWidth());
+		assertEquals(View.VISIBLE, created[0].getVisibility());
+		assertEquals(80f, created[0].getX(), DELTA);
+		assertEquals(190f, created[0].getY(), DELTA);
+		assertEquals(0.5f, created[0].getScaleX(), DELTA);
+		mClock.runToEnd();
+		assertEquals(0f, created[0].getX(), DELTA);
+		assertEquals(1f, created[0].getScaleX(), DELTA);
+		assertTransform(20f, -10f, 0.5f);
+		controller.release();
+		current.release();
+		other.release();
+	}
+
+	@Test
+	public void prefetchOnTouchIsOptIn() {
+		final ZoomAnimation.ZoomedViewFactory factory = new ZoomAnimation.ZoomedViewFactory() {
+			@Override
+			public View createZoomedInView(ViewGroup zoomedInContainer) {
+				return new View(zoomedInContainer.getContext());
+			}
+		};
+		final View.OnTouchListener appListener = new View.OnTouchListener() {
+			@Override
+			public boolean onTouch(View v, MotionEvent event) {
+				return false;
+			}
+		};
+		mZoomedOutView.setOnTouchListener(appListener);
+		final ZoomAnimation animation = new ZoomAnimation.Builder(mZoomedOutView, factory, mZoomedInContainer).build();
+		assertSame(appListener, touchListenerOf(mZoomedOutView));
+		animation.release();
+
+		final ZoomAnimation prefetching = new ZoomAnimation.Builder(mZoomedOutView, factory, mZoomedInContainer)
+				.prefetchOnTouch(true).build();
+		assertNotNull(touchListenerOf(mZoomedOutView));
+		prefetching.release();
+		assertNull(touchListenerOf(mZoomedOutView));
+	}
+
+	private static Object touchListenerOf(View view) {
+		final Object listenerInfo = ReflectionHelpers.getField(view, "mListenerInfo");
+		return listenerInfo == null ? null : ReflectionHelpers.getField(listenerInfo, "mOnTouchListener");
+	}
+
+	@Test
+	public void snapshotZoomsShareOneSnapshotViewAndReleaseFreesThePool() {
+		final ZoomAnimation first = builder().snapshot(true).build();
+		final ZoomAnimation second = builder().snapshot(true).build();
+		first.zoomIn();
+		// Waits for the snapshot view to be laid out
+		traverse();
+		mClock.runToEnd();
+		first.zoomOut();
+		mClock.runToEnd();
+		second.zoomIn();
+		traverse();
+		mClock.runToEnd();
+		second.zoomOut();
+		mClock.runToEnd();
+
+		int snapshotViews = 0;
+		for (int i = 0; i < mZoomedInContainer.getChildCount(); i++) {
+			if (mZoomedInContainer.getChildAt(i) instanceof SnapshotView) {
+				snapshotViews++;
+			}
+		}
+		assertEquals(1, snapshotViews);
+		assertNotNull("The snapshot went back to the pool", pooledBitmap());
+
+		first.release();
+		assertNull(pooledBitmap());
+		second.release();
+	}
+
+	private static Object pooledBitmap() {
+		for (Object bitmap : (Object[]) ReflectionHelpers.getStaticField(SnapshotPool.class, "POOL")) {
+			if (bitmap != null) {
+				return bitmap;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The number of scroll listeners on the window's view tree
+	 */
+	private int scrollListenerCount() {
+		final Object listeners = ReflectionHelpers.getField(mZoomedOutView.getViewTreeObserver(), "mOnScrollChangedListeners");
+		return listeners == null ? 0 : (Integer) ReflectionHelpers.callInstanceMethod(listeners, "size");
+	}
+
+	@Test
+	public void layoutListenersAreRegisteredFromTheFirstZoomUntilReleased() {
+		final int before = scrollListenerCount();
+		final ZoomAnimation animation = builder().build();
+		for (int i = 0; i < 5; i++) {
+			builder().build();
+		}
+		assertEquals("Building registers nothing", before, scrollListenerCount());
+
+		for (int cycle = 0; cycle < 2; cycle++) {
+			animation.zoomIn();
+			mClock.runToEnd();
+			animation.zoomOut();
+			mClock.runToEnd();
+			assertEquals(before + 1, scrollListenerCount());
+		}
+		animation.release();
+		assertEquals(before, scrollListenerCount());
+	}
+
+	@Test
+	public void secondZoomInWithAnUnchangedLayoutReusesTheGeometry() {
+		final ZoomAnimation animation = builder().build();
+		animation.zoomIn();
+		mClock.runToEnd();
+		animation.zoomOut();
+		mClock.runToEnd();
+		// Lays out what showing and hiding the zoomed-in view changed
+		traverse();
+		final int computed = mZoomedOutView.globalVisibleRectCount;
+
+		animation.zoomIn();
+		assertEquals("No rect walk", computed, mZoomedOutView.globalVisibleRectCount);
+		assertTransform(20f, -10f, 0.5f);
+		mClock.runToEnd();
+		traverse();
+		animation.zoomOut();
+		assertEquals("No rect walk", computed, mZoomedOutView.globalVisibleRectCount);
+		mClock.runToEnd();
+		assertTransform(20f, -10f, 0.5f);
+		animation.release();
+	}
+
+	@Test
+	public void zoomOutLandsWhereTheZoomedOutViewHasMoved() {
+		final ZoomAnimation animation = builder().build();
+		animation.zoomIn();
+		mClock.runToEnd();
+		final int computed = mZoomedOutView.globalVisibleRectCount;
+
+		// Move the zoomed-out view to (60, 100)
+		final FrameLayout.LayoutParams params = (FrameLayout.LayoutParams) mZoomedOutView.getLayoutParams();
+		params.leftMargin = 60;
+		params.topMargin = 100;
+		mZoomedOutView.setLayoutParams(params);
+		traverse();
+
+		animation.zoomOut();
+		assertEquals("Computed again", computed + 1, mZoomedOutView.globalVisibleRectCount);
+		assertTrue(mClock.step());
+		mClock.advance(ANIMATION_TIME / 2);
+		// Halfway to the 200x400 view cropped to the 100x100 square at
+		// (60, 100): (60, 50) at a scale of 1/2
+		assertTransform(30f, 25f, 0.75f);
+		mClock.runToEnd();
+		assertTransform(60f, 50f, 0.5f);
+		animation.release();
+	}
+
+	/**
+	 * Zoom in, save the state, and restore it into a new animation on views recreated with the zoomed-out view at (60, 100), as after a rotation.
+	 * The new views are not laid out yet.
+	 */
+	private ZoomAnimation restoreZoomedInIntoANewLayout() {
+		final ZoomAnimation previous = builder().build();
+		previous.zoomIn();
+		mClock.runToEnd();
+		final Bundle state = new Bundle();
+		previous.saveInstanceState(state, "zoom");
+		previous.release();
+
+		// Only the window is laid out when the activity is created, not yet
+		// the content set in onCreate()
+		ShadowLooper.unPauseMainLooper();
+		final Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+		ShadowLooper.pauseMainLooper();
+		createViews(activity, 60, 100);
+		mClock.resetCounters();
+		final ZoomAnimation restored = builder().build();
+		assertTrue(restored.restoreInstanceState(state, "zoom"));
+		return restored;
+	}
+
+	@Test
+	public void restoringAZoomInJumpsToTheEndWithoutAnimating() {
+		final ZoomAnimation animation = restoreZoomedInIntoANewLayout();
+		assertEquals(View.VISIBLE, mZoomedInView.getVisibility());
+		assertEquals(0f, mZoomedOutView.getAlpha(), 0f);
+		assertEquals(0, mClock.getRunningAnimationCount());
+
+		traverse();
+		assertTransform(0f, 0f, 1f);
+		assertEquals(0, mClock.getRunningAnimationCount());
+		assertFalse("No frames", mClock.step());
+		assertEquals(0, mClock.getFrameCallbackCount());
+		assertEquals(0, mClock.getEndCallbackCount());
+		animation.release();
+	}
+
+	@Test
+	public void restoringAZoomInComputesTheGeometryOnceLaidOut() {
+		final ZoomAnimation animation = restoreZoomedInIntoANewLayout();
+		assertEquals("Not before the first layout", 0, mZoomedOutView.globalVisibleRectCount);
+
+		traverse();
+		assertEquals(1, mZoomedOutView.globalVisibleRectCount);
+		assertEquals(100, mZoomedOutView.getWidth());
+		animation.release();
+	}
+
+	@Test
+	public void zoomOutAfterARestoreReturnsToTheNewLayout() {
+		final ZoomAnimation animation = restoreZoomedInIntoANewLayout();
+		traverse();
+
+		animation.zoomOut();
+		assertTrue(mClock.step());
+		assertTransform(0f, 0f, 1f);
+		mClock.advance(ANIMATION_TIME / 2);
+		// Halfway to the 200x400 view cropped to the 100x100 square at
+		// (60, 100): (60, 50) at a scale of 1/2
+		assertTransform(30f, 25f, 0.75f);
+		mClock.runToEnd();
+		assertTransform(60f, 50f, 0.5f);
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+		assertEquals(1f, mZoomedOutView.getAlpha(), 0f);
+		animation.release();
+	}
+
+	@Test
+	public void zoomedInViewZoomsOutOnClickWithoutAReferenceToTheAnimation() {
+		builder().build().zoomIn();
+		mClock.runToEnd();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+
+		mZoomedInView.performClick();
+		assertEquals(1, mClock.getRunningAnimationCount());
+		mClock.runToEnd();
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+	}
+
+	@Test
+	public void policySkipJumpsToTheEndWithoutFrames() {
+		final ZoomAnimation animation = builder().policy(new AnimationPolicy() {
+			@Override
+			public int decide(View view) {
+				return SKIP;
+			}
+		}).build();
+		animation.zoomIn();
+
+		assertTransform(0f, 0f, 1f);
+		assertEquals(0, mClock.getRunningAnimationCount());
+		mClock.runToEnd();
+		assertEquals(0, mClock.getFrameCallbackCount());
+		assertEquals(0, mClock.getEndCallbackCount());
+		animation.release();
+	}
+
+	@Test
+	public void zoomCyclesAllocateNothingOnceWarmedUp() {
+		// Robolectric's shadows allocate on every call that they pass on to
+		// the real view, so answer in their place: with the global visible
+		// rectangles of the setup, and without laying out the zoomed-in view,
+		// which nothing draws here
+		((ShadowView) Shadow.extract(mZoomedInContainer)).setGlobalVisibleRect(new Rect(0, 0, 200, 400));
+		((ShadowView) Shadow.extract(mZoomedOutView)).setGlobalVisibleRect(new Rect(20, 40, 120, 140));
+		mZoomedInContainer.removeView(mZoomedInView);
+		mZoomedInView = new View(mZoomedInContainer.getContext()) {
+			@Override
+			public void requestLayout() {
+			}
+		};
+		mZoomedInView.setVisibility(View.GONE);
+		mZoomedInContainer.addView(mZoomedInView);
+		// Robolectric never tells the view tree that its window is visible
+		ReflectionHelpers.setField(ReflectionHelpers.getField(mZoomedInContainer, "mAttachInfo"), "mWindowVisibility", View.VISIBLE);
+		final ZoomAnimation animation = builder().policy(AnimationPolicy.DEFAULT).build();
+		final Runnable zoomIn = new Runnable() {
+			@Override
+			public void run() {
+				animation.zoomIn();
+			}
+		};
+		final Runnable zoomOut = new Runnable() {
+			@Override
+			public void run() {
+				animation.zoomOut();
+			}
+		};
+		mClock.setCountAllocations(true);
+		// Class loading, lazy initialization and the listeners installed by
+		// the first zoom
+		for (int cycle = 0; cycle < 3; cycle++) {
+			animation.zoomIn();
+			mClock.runToEnd();
+			animation.zoomOut();
+			mClock.runToEnd();
+		}
+		mClock.resetCounters();
+
+		assertEquals("zoomIn()", 0, mClock.countAllocatedBytes(zoomIn));
+		assertTrue(mClock.step());
+		do {
+			assertEquals("Zoom-in frame", 0, mClock.getLastFrameAllocatedBytes());
+		} while (mClock.step());
+		assertTransform(0f, 0f, 1f);
+		assertEquals("zoomOut()", 0, mClock.countAllocatedBytes(zoomOut));
+		assertTrue(mClock.step());
+		do {
+			assertEquals("Zoom-out frame", 0, mClock.getLastFrameAllocatedBytes());
+		} while (mClock.step());
+		assertEquals(View.GONE, mZoomedInView.getVisibility());
+		assertEquals(2, mClock.getEndCallbackCount());
+		animation.release();
+	}
+}
@@ -0,0 +1,251 @@
+package com.github.curioustechizen.doubletake;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.view.animation.Interpolator;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+
+/**
+ * Zooms the items of an {@link AdapterView} such as a {@code GridView} or {@code ListView} into a single, shared zoomed-in view.
+ * <p>
+ * Instead of one hidden zoomed-in view per item, there is exactly one. When an item is tapped, a {@link ZoomedViewBinder} binds the content of that position into it,
+ * and a {@link ZoomAnimation} that is built once and re-targeted at the tapped item runs the zoom. Memory use therefore does not grow with the number of items.
+ * <p>
+ * Set the controller as the {@link OnItemClickListener} of the adapter view, or call {@link #zoomIn(View, int, long)} yourself. Obtain an instance using {@link Builder}
+ */
+public class AdapterZoomController implements OnItemClickListener {
+
+	/**
+	 * Binds the content of an adapter position into the shared zoomed-in view, like {@code getView()} does for the items
+	 */
+	public interface ZoomedViewBinder {
+
+		/**
+		 * Called on the main thread right before the zoom-in starts
+		 * @param zoomedInView The shared zoomed-in view
+		 * @param position The adapter position of the tapped item
+		 * @param id The row id of the tapped item
+		 */
+		void bindZoomedView(View zoomedInView, int position, long id);
+	}
+
+	private final AdapterView<?> mAdapterView;
+	private final View mZoomedInView;
+	private final ViewGroup mZoomedInContainer;
+	private final ViewGroup mZoomedOutContainer;
+	private final ZoomedViewBinder mBinder;
+	private final int mAnimationTime;
+	private final Interpolator mInterpolator;
+	private final int mScaleMode;
+	private final boolean mSnapshot;
+	private final Activity mActivity;
+
+	// Built on the first tap, from the tapped item
+	private ZoomAnimation mZoomAnimation;
+	private int mZoomedPosition = AdapterView.INVALID_POSITION;
+	// Set when the controller is built, and again only after release()
+	private boolean mClickListenerInstalled;
+
+	private AdapterZoomController(Builder builder) {
+		this.mAdapterView = builder.adapterView;
+		this.mZoomedInView = builder.zoomedInView;
+		this.mZoomedInContainer = builder.zoomedInContainer;
+		this.mZoomedOutContainer = builder.zoomedOutContainer;
+		this.mBinder = builder.binder;
+		this.mAnimationTime = builder.animationTime;
+		this.mInterpolator = builder.interpolator;
+		this.mScaleMode = builder.scaleMode;
+		this.mSnapshot = builder.snapshot;
+		this.mActivity = builder.activity;
+		installClickListener();
+	}
+
+	/**
+	 * Builder for creating an instance of {@link AdapterZoomController}
+	 *
+	 */
+	public static class Builder {
+
+		private final AdapterView<?> adapterView;
+		private final View zoomedInView;
+		private final ViewGroup zoomedInContainer;
+		private final ZoomedViewBinder binder;
+		private ViewGroup zoomedOutContainer;
+		private int animationTime;
+		private Interpolator interpolator = Easing.DECELERATE;
+		private int scaleMode = ZoomGeometry.CENTER_CROP;
+		private boolean snapshot;
+		private Activity activity;
+
+		/**
+		 * Constructor with mandatory parameters for the builder
+		 * @param adapterView The adapter view whose items are zoomed
+		 * @param zoomedInView The single zoomed-in view shared by all items
+		 * @param zoomedInContainer The container that the zoomed-in view should occupy
+		 * @param binder Binds the tapped position into the zoomed-in view
+		 */
+		public Builder(AdapterView<?> adapterView, View zoomedInView, ViewGroup zoomedInContainer,
+				ZoomedViewBinder binder) {
+			this.adapterView = adapterView;
+			this.zoomedInView = zoomedInView;
+			this.zoomedInContainer = zoomedInContainer;
+			this.binder = binder;
+			this.zoomedOutContainer = adapterView;
+			animationTime = zoomedInView.getContext().getResources()
+					.getInteger(android.R.integer.config_shortAnimTime);
+		}
+
+		/**
+		 * Hidden while an item is zoomed in. Defaults to the adapter view itself, which also keeps it from recycling the zoomed item's view while zoomed in.
+		 * See {@link ZoomAnimation.Builder#zoomedOutContainer(ViewGroup)}
+		 * @param zoomedOutContainer The container, or {@code null} to keep everything visible
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder zoomedOutContainer(ViewGroup zoomedOutContainer) {
+			this.zoomedOutContainer = zoomedOutContainer;
+			return this;
+		}
+
+		/**
+		 * @see ZoomAnimation.Builder#animationTime(int)
+		 */
+		public Builder animationTime(int animationTime) {
+			this.animationTime = animationTime;
+			return this;
+		}
+
+		/**
+		 * @see ZoomAnimation.Builder#interpolator(Interpolator)
+		 */
+		public Builder interpolator(Interpolator interpolator) {
+			this.interpolator = interpolator;
+			return this;
+		}
+
+		/**
+		 * @see ZoomAnimation.Builder#scaleMode(int)
+		 */
+		public Builder scaleMode(int scaleMode) {
+			this.scaleMode = scaleMode;
+			return this;
+		}
+
+		/**
+		 * @see ZoomAnimation.Builder#snapshot(boolean)
+		 */
+		public Builder snapshot(boolean snapshot) {
+			this.snapshot = snapshot;
+			return this;
+		}
+
+		/**
+		 * @see ZoomAnimation.Builder#bindToActivity(Activity)
+		 */
+		public Builder bindToActivity(Activity activity) {
+			this.activity = activity;
+			return this;
+		}
+
+		/**
+		 * Build the {@code AdapterZoomController} object with the specified properties
+		 * @return The {@code AdapterZoomController} object
+		 */
+		public AdapterZoomController build() {
+			return new AdapterZoomController(this);
+		}
+	}
+
+	private final OnClickListener mZoomOutClickListener = new OnClickListener() {
+		@Override
+		public void onClick(View v) {
+			zoomOut();
+		}
+	};
+
+	@Override
+	public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+		zoomIn(view, position, id);
+	}
+
+	/**
+	 * Bind the given position into the zoomed-in view and zoom into it from the item's view
+	 * @param itemView The view of the item in the adapter view
+	 * @param position The adapter position of the item
+	 * @param id The row id of the item
+	 */
+	public void zoomIn(View itemView, int position, long id) {
+		mBinder.bindZoomedView(mZoomedInView, position, id);
+		if (mZoomAnimation == null) {
+			mZoomAnimation = buildZoomAnimation(itemView);
+		} else {
+			retarget(itemView);
+		}
+		mZoomedPosition = position;
+		installClickListener();
+		mZoomAnimation.zoomIn();
+	}
+
+	/**
+	 * Zoom back out to the zoomed item, wherever its view is now
+	 */
+	public void zoomOut() {
+		if (mZoomAnimation == null || mZoomedPosition == AdapterView.INVALID_POSITION) {
+			return;
+		}
+		final View itemView = mAdapterView.getChildAt(mZoomedPosition - mAdapterView.getFirstVisiblePosition());
+		if (itemView != null) {
+			retarget(itemView);
+		}
+		mZoomedPosition = AdapterView.INVALID_POSITION;
+		mZoomAnimation.zoomOut();
+	}
+
+	/**
+	 * @return The adapter position of the zoomed-in item, or {@link AdapterView#INVALID_POSITION} if none is zoomed in
+	 */
+	public int getZoomedPosition() {
+		return mZoomedPosition;
+	}
+
+	/**
+	 * @see ZoomAnimation#release()
+	 */
+	public void release() {
+		if (mZoomAnimation != null) {
+			mZoomAnimation.release();
+		}
+		mZoomedInView.setOnClickListener(null);
+		mClickListenerInstalled = false;
+	}
+
+	private void retarget(View itemView) {
+		mZoomAnimation.setZoomedOutView(itemView);
+		// Adapter views move the views of their items with offsets, as in
+		// setSelection(), which neither lays them out nor scrolls anything
+		mZoomAnimation.invalidateGeometry();
+	}
+
+	private void installClickListener() {
+		// Zoom out through the controller, which finds the item's view again,
+		// rather than through the animation's own listener
+		if (!mClickListenerInstalled) {
+			mZoomedInView.setOnClickListener(mZoomOutClickListener);
+			mClickListenerInstalled = true;
+		}
+	}
+
+	private ZoomAnimation buildZoomAnimation(View itemView) {
+		return new ZoomAnimation.Builder(itemView, mZoomedInView, mZoomedInContainer)
+				.animationTime(mAnimationTime)
+				.zoomedOutContainer(mZoomedOutContainer)
+				.interpolator(mInterpolator)
+				.scaleMode(mScaleMode)
+				.snapshot(mSnapshot)
+				.bindToActivity(mActivity)
+				.zoomOutOnClick(false)
+				.build();
+	}
+}
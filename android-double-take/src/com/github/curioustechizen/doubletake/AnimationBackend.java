@@ -0,0 +1,107 @@
+package com.github.curioustechizen.doubletake;
+
+import android.os.Build;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+/**
+ * The animation primitives double-take animations are built on: a driver that runs a progress fraction from 0 to 1, and the view property writes applied on every frame.
+ * <p>
+ * Drivers are always ticked by the shared {@link AnimationEngine}. The property writes have two implementations. {@link FrameworkBackend} calls the {@code View} 
+ * property setters directly and is used from API 11. {@link NineOldAndroidsBackend} goes through nineoldandroids and its {@code AnimatorProxy} and is only used below that.
+ * The choice is made once, when this class is loaded.
+ */
+abstract class AnimationBackend {
+
+	/**
+	 * The backend for the platform the library runs on
+	 */
+	static final AnimationBackend INSTANCE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+			? new FrameworkBackend() : new NineOldAndroidsBackend();
+
+	/**
+	 * Runs a progress fraction from 0 to 1 over a duration. Created once per animation and restarted for every run.
+	 */
+	abstract static class Driver {
+
+		/**
+		 * Receives the progress of a {@link Driver} on the main thread
+		 */
+		interface Callback {
+
+			/**
+			 * @param fraction The interpolated progress of the current frame
+			 */
+			void onFrame(float fraction);
+
+			/**
+			 * Called exactly once per run, synchronously from {@link Driver#cancel()} if the run is cancelled
+			 * @param cancelled {@code true} if the run was cancelled rather than finished
+			 */
+			void onEnd(boolean cancelled);
+		}
+
+		/**
+		 * @param durationMillis The duration of a run at an animator duration scale of 1. Runs take that times the scale set in the developer options.
+		 */
+		abstract void setDuration(long durationMillis);
+
+		/**
+		 * @return The duration as set, not scaled
+		 */
+		abstract long getDuration();
+
+		/**
+		 * Start a run. The callback only receives the first frame on the next animation tick.
+		 */
+		abstract void start();
+
+		/**
+		 * Cancel the current run, if there is one
+		 */
+		abstract void cancel();
+
+		/**
+		 * Jump to the end of the current run, if there is one. The callback synchronously receives a last frame at the end value and {@code onEnd(false)}.
+		 */
+		abstract void end();
+
+		/**
+		 * @return The number of frames dropped so far in the current or last run, against the refresh interval of the display
+		 */
+		abstract int getDroppedFrames();
+
+		/**
+		 * @return Whether a run has been started and has not ended yet
+		 */
+		abstract boolean isRunning();
+	}
+
+	/**
+	 * @param interpolator The easing applied to the fraction passed to the callback
+	 * @param callback Receives the frames and the end of every run
+	 * @return A new, idle driver
+	 */
+	final Driver newDriver(Interpolator interpolator, Driver.Callback callback) {
+		return AnimationEngine.getInstance().newDriver(interpolator, callback);
+	}
+
+	/**
+	 * Set the x, y, scaleX and scaleY properties of the view in one call
+	 */
+	abstract void setTransform(View view, float x, float y, float scaleX, float scaleY);
+
+	abstract float getX(View view);
+
+	abstract float getY(View view);
+
+	abstract float getScaleX(View view);
+
+	abstract float getScaleY(View view);
+
+	abstract void setPivot(View view, float pivotX, float pivotY);
+
+	abstract void setAlpha(View view, float alpha);
+
+	abstract float getAlpha(View view);
+}
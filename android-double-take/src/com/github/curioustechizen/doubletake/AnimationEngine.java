@@ -0,0 +1,410 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import android.view.animation.Interpolator;
+
+/**
+ * The single ticker behind every double-take animation. All running {@link AnimationBackend.Driver}s live in one array and are advanced together,
+ * from one {@link Choreographer} frame callback on API 16+ or one main-thread {@link Handler} message below that.
+ * <p>
+ * Within a frame, all running animations first apply their progress. The end callbacks of the ones that finished are then dispatched together,
+ * so the visibility changes they make land in the same frame and cost a single layout pass.
+ * <p>
+ * Work that should happen at the start of the next frame, before any animation advances, can be queued with {@link #runAtFrameStart(Runnable)}.
+ * <p>
+ * Frames come from the display by default. A {@link FrameSource} can replace it, which is how the JVM tests step animations frame by frame.
+ * <p>
+ * Only to be used from the main thread.
+ */
+final class AnimationEngine {
+
+	private static final boolean CHOREOGRAPHER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+	private static final long FALLBACK_FRAME_DELAY_MILLIS = 16;
+
+	private static AnimationEngine sInstance;
+
+	/**
+	 * Schedules frames in place of the display
+	 */
+	interface FrameSource {
+
+		/**
+		 * Arrange for {@link AnimationEngine#doFrame(long)} to be called once. Not called again until that has happened.
+		 */
+		void postFrame();
+	}
+
+	private EngineDriver[] mActive = new EngineDriver[8];
+	private int mActiveCount;
+	private EngineDriver[] mEnded = new EngineDriver[8];
+	private int mEndedCount;
+	// Swapped at the start of every frame, so that actions queued by an
+	// action run on the frame after
+	private Runnable[] mFrameStartActions = new Runnable[2];
+	private Runnable[] mRunningActions = new Runnable[2];
+	private int mFrameStartActionCount;
+	private boolean mInFrame;
+	private boolean mFramePosted;
+
+	private FrameSource mFrameSource;
+	private Object mFrameCallback;
+	private Handler mHandler;
+	private Runnable mFrameRunnable;
+
+	// Counters for the JVM tests
+	private long mFrameCount;
+	private long mFrameCallbackCount;
+	private long mEndCallbackCount;
+
+	private AnimationEngine() {
+	}
+
+	static AnimationEngine getInstance() {
+		if (sInstance == null) {
+			sInstance = new AnimationEngine();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @return A new, idle driver ticked by this engine
+	 */
+	AnimationBackend.Driver newDriver(Interpolator interpolator, AnimationBackend.Driver.Callback callback) {
+		return new EngineDriver(this, interpolator, callback);
+	}
+
+	/**
+	 * Take frames from the given source instead of the display, or from the display again if {@code null}. A frame already posted is moved over to the new source.
+	 */
+	void setFrameSource(FrameSource frameSource) {
+		if (mFramePosted) {
+			removePostedFrame();
+			mFramePosted = false;
+		}
+		mFrameSource = frameSource;
+		if (mActiveCount > 0 || mFrameStartActionCount > 0) {
+			postFrame();
+		}
+	}
+
+	/**
+	 * Run the action once, at the start of the next frame and before any animation advances in it. Drivers started by the action have their clock started by that frame.
+	 */
+	void runAtFrameStart(Runnable action) {
+		if (mFrameStartActionCount == mFrameStartActions.length) {
+			final Runnable[] grown = new Runnable[mFrameStartActions.length * 2];
+			System.arraycopy(mFrameStartActions, 0, grown, 0, mFrameStartActions.length);
+			mFrameStartActions = grown;
+		}
+		mFrameStartActions[mFrameStartActionCount++] = action;
+		postFrame();
+	}
+
+	long getFrameCount() {
+		return mFrameCount;
+	}
+
+	long getFrameCallbackCount() {
+		return mFrameCallbackCount;
+	}
+
+	long getEndCallbackCount() {
+		return mEndCallbackCount;
+	}
+
+	void resetCounters() {
+		mFrameCount = 0;
+		mFrameCallbackCount = 0;
+		mEndCallbackCount = 0;
+	}
+
+	/**
+	 * @return The number of drivers currently running
+	 */
+	int getActiveCount() {
+		return mActiveCount;
+	}
+
+	private void add(EngineDriver driver) {
+		if (mActiveCount == mActive.length) {
+			mActive = grow(mActive);
+		}
+		mActive[mActiveCount++] = driver;
+		postFrame();
+	}
+
+	private void remove(EngineDriver driver) {
+		for (int i = 0; i < mActiveCount; i++) {
+			if (mActive[i] == driver) {
+				// Compacted at the end of the frame, so the loop in doFrame()
+				// does not skip the driver that moves into this slot.
+				mActive[i] = null;
+				if (!mInFrame) {
+					compact();
+				}
+				return;
+			}
+		}
+	}
+
+	private void compact() {
+		int kept = 0;
+		for (int i = 0; i < mActiveCount; i++) {
+			if (mActive[i] != null) {
+				mActive[kept++] = mActive[i];
+			}
+		}
+		for (int i = kept; i < mActiveCount; i++) {
+			mActive[i] = null;
+		}
+		mActiveCount = kept;
+	}
+
+	void doFrame(long frameTimeNanos) {
+		mFramePosted = false;
+		mInFrame = true;
+		mFrameCount++;
+		runFrameStartActions();
+		// Drivers started from a callback during this frame get their first
+		// frame on the next one
+		final int count = mActiveCount;
+		for (int i = 0; i < count; i++) {
+			final EngineDriver driver = mActive[i];
+			if (driver == null) {
+				continue;
+			}
+			mFrameCallbackCount++;
+			if (driver.advance(frameTimeNanos)) {
+				mActive[i] = null;
+				if (mEndedCount == mEnded.length) {
+					mEnded = grow(mEnded);
+				}
+				mEnded[mEndedCount++] = driver;
+			}
+		}
+		mInFrame = false;
+		compact();
+
+		for (int i = 0; i < mEndedCount; i++) {
+			final EngineDriver driver = mEnded[i];
+			mEnded[i] = null;
+			mEndCallbackCount++;
+			driver.dispatchEnd();
+		}
+		mEndedCount = 0;
+
+		if (mActiveCount > 0 || mFrameStartActionCount > 0) {
+			postFrame();
+		}
+	}
+
+	private void runFrameStartActions() {
+		final int count = mFrameStartActionCount;
+		if (count == 0) {
+			return;
+		}
+		final Runnable[] actions = mFrameStartActions;
+		mFrameStartActions = mRunningActions;
+		mRunningActions = actions;
+		mFrameStartActionCount = 0;
+		for (int i = 0; i < count; i++) {
+			final Runnable action = actions[i];
+			actions[i] = null;
+			action.run();
+		}
+	}
+
+	private static EngineDriver[] grow(EngineDriver[] drivers) {
+		final EngineDriver[] grown = new EngineDriver[drivers.length * 2];
+		System.arraycopy(drivers, 0, grown, 0, drivers.length);
+		return grown;
+	}
+
+	private void postFrame() {
+		if (mFramePosted || mInFrame) {
+			// doFrame() posts the next frame itself once it is done
+			return;
+		}
+		mFramePosted = true;
+		if (mFrameSource != null) {
+			mFrameSource.postFrame();
+		} else if (CHOREOGRAPHER) {
+			postFrameCallback();
+		} else {
+			postFrameRunnable();
+		}
+	}
+
+	private void removePostedFrame() {
+		if (mFrameSource != null) {
+			// Its next frame finds nothing posted and does nothing
+			return;
+		}
+		if (CHOREOGRAPHER) {
+			removeFrameCallback();
+		} else if (mHandler != null) {
+			mHandler.removeCallbacks(mFrameRunnable);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void removeFrameCallback() {
+		if (mFrameCallback != null) {
+			Choreographer.getInstance().removeFrameCallback((FrameCallback) mFrameCallback);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void postFrameCallback() {
+		if (mFrameCallback == null) {
+			mFrameCallback = new FrameCallback() {
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					AnimationEngine.this.doFrame(frameTimeNanos);
+				}
+			};
+		}
+		Choreographer.getInstance().postFrameCallback((FrameCallback) mFrameCallback);
+	}
+
+	private void postFrameRunnable() {
+		if (mHandler == null) {
+			mHandler = new Handler(Looper.getMainLooper());
+			mFrameRunnable = new Runnable() {
+				@Override
+				public void run() {
+					doFrame(System.nanoTime());
+				}
+			};
+		}
+		mHandler.postDelayed(mFrameRunnable, FALLBACK_FRAME_DELAY_MILLIS);
+	}
+
+	private static final class EngineDriver extends AnimationBackend.Driver {
+
+		private final AnimationEngine mEngine;
+		private final Interpolator mInterpolator;
+		private final Callback mCallback;
+		private long mDurationMillis;
+		// Scaled by the animator duration scale when the clock starts
+		private long mDurationNanos;
+		// The refresh interval of the display, that dropped frames are
+		// counted against. Fixed for the run, like the duration.
+		private long mFrameIntervalNanos;
+		private long mStartNanos;
+		private long mLastFrameNanos;
+		private int mDroppedFrames;
+		private boolean mRunning;
+		private boolean mEndPending;
+
+		EngineDriver(AnimationEngine engine, Interpolator interpolator, Callback callback) {
+			this.mEngine = engine;
+			this.mInterpolator = interpolator;
+			this.mCallback = callback;
+		}
+
+		@Override
+		void setDuration(long durationMillis) {
+			mDurationMillis = durationMillis;
+		}
+
+		@Override
+		long getDuration() {
+			return mDurationMillis;
+		}
+
+		@Override
+		void start() {
+			if (mEndPending) {
+				// Restarted before the engine got to the end of the last run
+				dispatchEnd();
+			}
+			// The clock starts on the first frame, like ValueAnimator
+			mStartNanos = -1;
+			mDroppedFrames = 0;
+			if (!mRunning) {
+				mRunning = true;
+				mEngine.add(this);
+			}
+		}
+
+		@Override
+		void cancel() {
+			if (!mRunning) {
+				return;
+			}
+			mRunning = false;
+			mEngine.remove(this);
+			mCallback.onEnd(true);
+		}
+
+		@Override
+		void end() {
+			if (!mRunning) {
+				return;
+			}
+			mRunning = false;
+			mEngine.remove(this);
+			mCallback.onFrame(mInterpolator.getInterpolation(1f));
+			mCallback.onEnd(false);
+		}
+
+		@Override
+		int getDroppedFrames() {
+			return mDroppedFrames;
+		}
+
+		@Override
+		boolean isRunning() {
+			return mRunning;
+		}
+
+		/**
+		 * Apply the progress at the given frame time
+		 * @return Whether the run is over. The end callback is then left to {@link #dispatchEnd()}.
+		 */
+		boolean advance(long frameTimeNanos) {
+			if (mStartNanos < 0) {
+				mStartNanos = frameTimeNanos;
+				// Fixed for the run, like ValueAnimator does
+				mDurationNanos = (long) (mDurationMillis * 1000000L * SystemAnimationSettings.getDurationScale());
+				mFrameIntervalNanos = SystemAnimationSettings.getFrameIntervalNanos();
+			} else {
+				// A gap of n intervals means n - 1 frames were dropped
+				final long missed = (frameTimeNanos - mLastFrameNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+				if (missed > 0) {
+					mDroppedFrames += missed;
+				}
+			}
+			mLastFrameNanos = frameTimeNanos;
+			final long elapsedNanos = frameTimeNanos - mStartNanos;
+			float fraction = mDurationNanos <= 0 ? 1f : (float) elapsedNanos / mDurationNanos;
+			if (fraction > 1f) {
+				fraction = 1f;
+			}
+			mCallback.onFrame(mInterpolator.getInterpolation(fraction));
+			if (!mRunning) {
+				// Cancelled or ended from the callback, which took care of onEnd
+				return false;
+			}
+			if (fraction < 1f) {
+				return false;
+			}
+			mRunning = false;
+			mEndPending = true;
+			return true;
+		}
+
+		void dispatchEnd() {
+			if (mEndPending) {
+				mEndPending = false;
+				mCallback.onEnd(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.github.curioustechizen.doubletake;
+
+/**
+ * Frame timing statistics of a single run of a double-take animation. Delivered to an {@link AnimationMetricsListener}.
+ * <p>
+ * Frame deltas come from {@code Choreographer} frame times on API 16 and above. On older platforms they are the wall-clock times of the animation ticks.
+ */
+public final class AnimationMetrics {
+
+	/**
+	 * The run was {@link ZoomAnimation#zoomIn()}
+	 */
+	public static final int TYPE_ZOOM_IN = 0;
+
+	/**
+	 * The run was {@link ZoomAnimation#zoomOut()}
+	 */
+	public static final int TYPE_ZOOM_OUT = 1;
+
+	/**
+	 * The run was {@link CrossfadeAnimation#animate()}
+	 */
+	public static final int TYPE_CROSSFADE = 2;
+
+	private final int mType;
+	private final long mPlannedDurationMillis;
+	private final long mActualDurationNanos;
+	private final long[] mFrameDeltasNanos;
+	private final int mDroppedFrameCount;
+	private final long mInitTimeNanos;
+	private final long mFrameIntervalNanos;
+	private final boolean mCancelled;
+
+	AnimationMetrics(int type, long plannedDurationMillis, long actualDurationNanos, long[] frameDeltasNanos,
+			int droppedFrameCount, long initTimeNanos, long frameIntervalNanos, boolean cancelled) {
+		this.mType = type;
+		this.mPlannedDurationMillis = plannedDurationMillis;
+		this.mActualDurationNanos = actualDurationNanos;
+		this.mFrameDeltasNanos = frameDeltasNanos;
+		this.mDroppedFrameCount = droppedFrameCount;
+		this.mInitTimeNanos = initTimeNanos;
+		this.mFrameIntervalNanos = frameIntervalNanos;
+		this.mCancelled = cancelled;
+	}
+
+	/**
+	 * @return One of {@link #TYPE_ZOOM_IN}, {@link #TYPE_ZOOM_OUT} or {@link #TYPE_CROSSFADE}
+	 */
+	public int getType() {
+		return mType;
+	}
+
+	/**
+	 * @return The duration the animation was configured with, in milliseconds, scaled by the animator duration scale from the developer options
+	 */
+	public long getPlannedDurationMillis() {
+		return mPlannedDurationMillis;
+	}
+
+	/**
+	 * @return The time between the start of the animation and its end (or cancellation), in nanoseconds
+	 */
+	public long getActualDurationNanos() {
+		return mActualDurationNanos;
+	}
+
+	/**
+	 * @return The number of frames that were drawn while the animation ran
+	 */
+	public int getFrameCount() {
+		return mFrameDeltasNanos.length + (mFrameDeltasNanos.length > 0 ? 1 : 0);
+	}
+
+	/**
+	 * @return The time between each pair of consecutive frames, in nanoseconds. The returned array is a copy.
+	 */
+	public long[] getFrameDeltasNanos() {
+		return mFrameDeltasNanos.clone();
+	}
+
+	/**
+	 * @return The number of display refreshes that were missed while the animation ran
+	 */
+	public int getDroppedFrameCount() {
+		return mDroppedFrameCount;
+	}
+
+	/**
+	 * @return The time spent computing the geometry and setting up the views before the first frame, in nanoseconds
+	 */
+	public long getInitTimeNanos() {
+		return mInitTimeNanos;
+	}
+
+	/**
+	 * @return The display refresh interval the dropped frames were counted against, in nanoseconds
+	 */
+	public long getFrameIntervalNanos() {
+		return mFrameIntervalNanos;
+	}
+
+	/**
+	 * @return {@code true} if the animation was cancelled rather than running to its end
+	 */
+	public boolean wasCancelled() {
+		return mCancelled;
+	}
+
+	@Override
+	public String toString() {
+		return "AnimationMetrics{type=" + mType + ", planned=" + mPlannedDurationMillis + "ms, actual="
+				+ (mActualDurationNanos / 1000000) + "ms, frames=" + getFrameCount() + ", dropped="
+				+ mDroppedFrameCount + ", init=" + (mInitTimeNanos / 1000) + "us, cancelled=" + mCancelled + "}";
+	}
+}
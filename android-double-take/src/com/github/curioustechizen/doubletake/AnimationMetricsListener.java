@@ -0,0 +1,16 @@
+package com.github.curioustechizen.doubletake;
+
+/**
+ * Callback for receiving frame timing statistics of double-take animations. Register it with {@link ZoomAnimation.Builder#metricsListener(AnimationMetricsListener)}
+ * or {@link CrossfadeAnimation.Builder#metricsListener(AnimationMetricsListener)}.
+ * <p>
+ * When no listener is registered no timing is recorded at all, so it is fine to leave the hook in production code and only register a listener where you aggregate the numbers.
+ */
+public interface AnimationMetricsListener {
+
+	/**
+	 * Called on the main thread once an animation has ended or has been cancelled
+	 * @param metrics The statistics of the animation that just finished
+	 */
+	void onAnimationMetrics(AnimationMetrics metrics);
+}
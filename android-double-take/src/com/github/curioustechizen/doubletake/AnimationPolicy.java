@@ -0,0 +1,118 @@
+package com.github.curioustechizen.doubletake;
+
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Decides how much of an animation is worth running. Before every run, {@link #decide(View)} picks one of
+ * <ul>
+ * <li>{@link #FULL}: the animation as designed,</li>
+ * <li>{@link #REDUCED}: a cheaper variant. A zoom becomes a plain crossfade of the zoomed-in view at its final size. A crossfade is already as cheap as it gets and runs as usual.</li>
+ * <li>{@link #SKIP}: no animation at all. The views jump straight to their end state.</li>
+ * </ul>
+ * While a run is in flight, {@link #shouldDowngrade(int)} is asked on every frame whether the frames dropped so far warrant switching to the cheaper variant,
+ * or for a crossfade, to finishing right away.
+ * <p>
+ * The {@link #DEFAULT} policy skips animations of views that are not on screen and animations the user has switched off (animator duration scale 0),
+ * reduces animations in power-save mode, and downgrades a run once it has dropped {@link #DEFAULT_MAX_DROPPED_FRAMES} frames. Subclass it to change any of that,
+ * or use {@link #ALWAYS_FULL} to always run the full animation.
+ */
+public class AnimationPolicy {
+
+	/**
+	 * Run the full animation
+	 */
+	public static final int FULL = 0;
+
+	/**
+	 * Run a cheaper variant of the animation
+	 */
+	public static final int REDUCED = 1;
+
+	/**
+	 * Jump straight to the end state
+	 */
+	public static final int SKIP = 2;
+
+	/**
+	 * Frames a run may drop before the default policy downgrades it
+	 */
+	public static final int DEFAULT_MAX_DROPPED_FRAMES = 4;
+
+	/**
+	 * The policy animations use unless told otherwise
+	 */
+	public static final AnimationPolicy DEFAULT = new AnimationPolicy();
+
+	/**
+	 * A policy that always runs the full animation and never downgrades it
+	 */
+	public static final AnimationPolicy ALWAYS_FULL = new AnimationPolicy() {
+		@Override
+		public int decide(View view) {
+			return FULL;
+		}
+
+		@Override
+		public boolean shouldDowngrade(int droppedFrames) {
+			return false;
+		}
+	};
+
+	private final int mMaxDroppedFrames;
+	// Only used on the main thread
+	private final Rect mVisibleRect = new Rect();
+
+	/**
+	 * Creates a policy that downgrades after {@link #DEFAULT_MAX_DROPPED_FRAMES} dropped frames
+	 */
+	public AnimationPolicy() {
+		this(DEFAULT_MAX_DROPPED_FRAMES);
+	}
+
+	/**
+	 * @param maxDroppedFrames The number of frames a run may drop before it is downgraded
+	 */
+	public AnimationPolicy(int maxDroppedFrames) {
+		this.mMaxDroppedFrames = maxDroppedFrames;
+	}
+
+	/**
+	 * Called on the main thread before every run, so keep it cheap. The default implementation reads the system settings from a cache that their change
+	 * notifications keep up to date, and allocates nothing.
+	 * @param view A view that the animation takes place in: the zoomed-in container of a zoom, or the parent of the view faded in by a crossfade
+	 * @return One of {@link #FULL}, {@link #REDUCED} or {@link #SKIP}
+	 */
+	public int decide(View view) {
+		if (view.getWindowToken() == null || view.getWindowVisibility() != View.VISIBLE || !view.isShown()
+				|| !view.getGlobalVisibleRect(mVisibleRect)) {
+			// Nobody would see it
+			return SKIP;
+		}
+		if (SystemAnimationSettings.getDurationScale() == 0f) {
+			return SKIP;
+		}
+		if (SystemAnimationSettings.isPowerSaveMode()) {
+			return REDUCED;
+		}
+		return FULL;
+	}
+
+	/**
+	 * What the animations call before every run instead of {@link #decide(View)}: the system settings are followed from then on whatever the policy,
+	 * since the engine also scales every duration by the animator duration scale
+	 */
+	final int decideFor(View view) {
+		SystemAnimationSettings.init(view.getContext());
+		return decide(view);
+	}
+
+	/**
+	 * Called on the main thread on every frame of a run that is not yet reduced
+	 * @param droppedFrames The number of frames dropped so far in this run, counted against the refresh interval of the display
+	 * @return Whether to switch to the cheaper variant for the rest of the run
+	 */
+	public boolean shouldDowngrade(int droppedFrames) {
+		return droppedFrames >= mMaxDroppedFrames;
+	}
+}
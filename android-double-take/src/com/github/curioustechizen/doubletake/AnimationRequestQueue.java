@@ -0,0 +1,215 @@
+package com.github.curioustechizen.doubletake;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+/**
+ * Requests zooms and crossfades from any thread, and runs them on the main thread at the start of the next frame.
+ * <p>
+ * Requests are coalesced per container: of all requests made for the same container before the next frame, only the last one runs. A double tap,
+ * or taps on two items in the same frame, therefore start one animation instead of starting several and cancelling all but one of them straight away.
+ * The container is the zoomed-in container of a {@link ZoomAnimation}, and the parent of the (first) view faded in by a crossfade at the time the crossfade was built.
+ * <p>
+ * Requests for different containers run in the order they were first made. Requests are recycled once they have run, so a steady stream of them
+ * allocates nothing.
+ */
+public final class AnimationRequestQueue {
+
+	private static final int ZOOM_IN = 0;
+	private static final int ZOOM_OUT = 1;
+	private static final int CROSSFADE = 2;
+	private static final int MULTI_CROSSFADE = 3;
+
+	private static final Object LOCK = new Object();
+	// Guarded by LOCK. The last request per container, in the order the
+	// containers were first requested. There are rarely more than a few
+	// containers, so they are searched linearly.
+	private static final ArrayList<Request> PENDING = new ArrayList<Request>();
+	// Guarded by LOCK. Requests that have run or were dropped, for reuse.
+	private static final ArrayList<Request> POOL = new ArrayList<Request>();
+	private static boolean sScheduled;
+
+	// Only used on the main thread
+	private static final ArrayList<Request> RUNNING = new ArrayList<Request>();
+	private static Handler sMainHandler;
+
+	private static final Runnable SCHEDULE = new Runnable() {
+		@Override
+		public void run() {
+			AnimationEngine.getInstance().runAtFrameStart(RUN);
+		}
+	};
+
+	private static final Runnable RUN = new Runnable() {
+		@Override
+		public void run() {
+			runPending();
+		}
+	};
+
+	private static final class Request {
+
+		View mContainer;
+		int mType;
+		Object mAnimation;
+	}
+
+	private AnimationRequestQueue() {
+	}
+
+	/**
+	 * Zoom in at the start of the next frame, unless another request for the same container follows before then. Can be called from any thread.
+	 */
+	public static void requestZoomIn(ZoomAnimation animation) {
+		enqueue(animation.getZoomedInContainer(), ZOOM_IN, animation);
+	}
+
+	/**
+	 * Zoom out at the start of the next frame, unless another request for the same container follows before then. Can be called from any thread.
+	 */
+	public static void requestZoomOut(ZoomAnimation animation) {
+		enqueue(animation.getZoomedInContainer(), ZOOM_OUT, animation);
+	}
+
+	/**
+	 * Run the crossfade at the start of the next frame, unless another request for the same container follows before then. Can be called from any thread.
+	 */
+	public static void requestAnimate(CrossfadeAnimation animation) {
+		enqueue(animation.getContainer(), CROSSFADE, animation);
+	}
+
+	/**
+	 * Run the crossfade at the start of the next frame, unless another request for the same container follows before then. Can be called from any thread.
+	 */
+	public static void requestAnimate(MultiCrossfadeAnimation animation) {
+		enqueue(animation.getContainer(), MULTI_CROSSFADE, animation);
+	}
+
+	/**
+	 * Drop the request pending for the container, if any. An animation that has already started is not affected. Can be called from any thread.
+	 * @param container The zoomed-in container of a zoom, or the parent of the view faded in by a crossfade
+	 */
+	public static void cancelRequests(View container) {
+		synchronized (LOCK) {
+			final int index = indexOfPending(container);
+			if (index >= 0) {
+				recycle(PENDING.remove(index));
+			}
+		}
+	}
+
+	/**
+	 * Drop the request pending for the given animation, if the last request for its container is one
+	 */
+	static void cancelRequestsOf(Object animation) {
+		synchronized (LOCK) {
+			for (int i = PENDING.size() - 1; i >= 0; i--) {
+				if (PENDING.get(i).mAnimation == animation) {
+					recycle(PENDING.remove(i));
+				}
+			}
+		}
+	}
+
+	private static void enqueue(View container, int type, Object animation) {
+		final boolean schedule;
+		synchronized (LOCK) {
+			// Replacing the request keeps the container's place in the order
+			final Request request;
+			final int index = indexOfPending(container);
+			if (index >= 0) {
+				request = PENDING.get(index);
+			} else {
+				request = POOL.isEmpty() ? new Request() : POOL.remove(POOL.size() - 1);
+				request.mContainer = container;
+				PENDING.add(request);
+			}
+			request.mType = type;
+			request.mAnimation = animation;
+			schedule = !sScheduled;
+			sScheduled = true;
+		}
+		if (!schedule) {
+			return;
+		}
+		if (Looper.myLooper() == Looper.getMainLooper()) {
+			SCHEDULE.run();
+		} else {
+			mainHandler().post(SCHEDULE);
+		}
+	}
+
+	// Called with LOCK held
+	private static int indexOfPending(View container) {
+		for (int i = 0, size = PENDING.size(); i < size; i++) {
+			if (PENDING.get(i).mContainer == container) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// Called with LOCK held. Forgets the animation and its container, which a
+	// pooled request must not keep alive.
+	private static void recycle(Request request) {
+		request.mContainer = null;
+		request.mAnimation = null;
+		POOL.add(request);
+	}
+
+	private static Handler mainHandler() {
+		synchronized (LOCK) {
+			if (sMainHandler == null) {
+				sMainHandler = new Handler(Looper.getMainLooper());
+			}
+			return sMainHandler;
+		}
+	}
+
+	private static void runPending() {
+		synchronized (LOCK) {
+			for (int i = 0, size = PENDING.size(); i < size; i++) {
+				RUNNING.add(PENDING.get(i));
+			}
+			PENDING.clear();
+			// Requests made from here on go to the next frame
+			sScheduled = false;
+		}
+		Tracing.begin(Tracing.REQUESTS);
+		try {
+			for (int i = 0, size = RUNNING.size(); i < size; i++) {
+				run(RUNNING.get(i));
+			}
+		} finally {
+			synchronized (LOCK) {
+				for (int i = 0, size = RUNNING.size(); i < size; i++) {
+					recycle(RUNNING.get(i));
+				}
+			}
+			RUNNING.clear();
+			Tracing.end();
+		}
+	}
+
+	private static void run(Request request) {
+		switch (request.mType) {
+		case ZOOM_IN:
+			((ZoomAnimation) request.mAnimation).zoomIn();
+			break;
+		case ZOOM_OUT:
+			((ZoomAnimation) request.mAnimation).zoomOut();
+			break;
+		case CROSSFADE:
+			((CrossfadeAnimation) request.mAnimation).animate();
+			break;
+		case MULTI_CROSSFADE:
+			((MultiCrossfadeAnimation) request.mAnimation).animate();
+			break;
+		default:
+			throw new IllegalStateException("Unknown request type " + request.mType);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package com.github.curioustechizen.doubletake;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+
+/**
+ * Decodes bitmaps off the main thread, at a size matched to where they will be shown, and keeps the results in a size-bounded LRU cache.
+ * <p>
+ * Everything except the decoding itself happens on the main thread. Concurrent requests for the same key share one decode.
+ * <p>
+ * Full images and thumbnails are decoded on two threads of their own, so that a full image the user is zooming into never waits behind a screenful of thumbnails.
+ */
+final class BitmapLoader {
+
+	/**
+	 * Receives a decoded bitmap on the main thread
+	 */
+	interface Callback {
+
+		/**
+		 * @param key The key the bitmap was requested with
+		 * @param bitmap The decoded bitmap, or {@code null} if decoding failed
+		 */
+		void onBitmapLoaded(String key, Bitmap bitmap);
+	}
+
+	// An eighth of the heap is the usual budget for an in-memory bitmap cache.
+	private static final LruCache<String, Bitmap> CACHE = new LruCache<String, Bitmap>(
+			(int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8)) {
+		@Override
+		protected int sizeOf(String key, Bitmap value) {
+			return value.getRowBytes() * value.getHeight();
+		}
+	};
+
+	private static final ExecutorService EXECUTOR = newDecoderExecutor("double-take-decoder",
+			Process.THREAD_PRIORITY_BACKGROUND);
+
+	private static final ExecutorService LOW_PRIORITY_EXECUTOR = newDecoderExecutor("double-take-thumbnails",
+			Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE);
+
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	// Callbacks waiting for a decode that is already in flight, by key
+	private static final HashMap<String, ArrayList<Callback>> IN_FLIGHT = new HashMap<String, ArrayList<Callback>>();
+
+	// The configuration the last configuration key was made for, and that key
+	private static Configuration sKeyConfiguration;
+	private static String sConfigurationKey;
+
+	private BitmapLoader() {
+	}
+
+	private static ExecutorService newDecoderExecutor(final String name, final int priority) {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						Process.setThreadPriority(priority);
+						r.run();
+					}
+				}, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * The part of a cache key that stands for the resource configuration: the screen density, the UI mode including night mode, the orientation,
+	 * the screen layout and the locale. These pick the variant of a drawable resource that is loaded and the density it is scaled to.
+	 * The same string is returned for as long as the configuration does not change. Must be called on the main thread.
+	 */
+	static String configurationKey(Resources res) {
+		final Configuration config = res.getConfiguration();
+		if (sKeyConfiguration == null || !sKeyConfiguration.equals(config)) {
+			sKeyConfiguration = new Configuration(config);
+			sConfigurationKey = res.getDisplayMetrics().densityDpi + "dpi-" + Integer.toHexString(config.uiMode)
+					+ "-" + config.orientation + "-" + Integer.toHexString(config.screenLayout) + "-" + config.locale;
+		}
+		return sConfigurationKey;
+	}
+
+	/**
+	 * The key under which a resource decoded for the given size is cached
+	 * @param configurationKey See {@link #configurationKey(Resources)}
+	 */
+	static String resourceKey(int resId, int reqWidth, int reqHeight, String configurationKey) {
+		return "res:" + resId + "@" + reqWidth + "x" + reqHeight + "/" + configurationKey;
+	}
+
+	/**
+	 * @return The cached bitmap for the key, or {@code null}
+	 */
+	static Bitmap getCached(String key) {
+		return CACHE.get(key);
+	}
+
+	/**
+	 * Put a bitmap into the memory cache
+	 */
+	static void putCached(String key, Bitmap bitmap) {
+		CACHE.put(key, bitmap);
+	}
+
+	/**
+	 * Decode a drawable resource in the background, subsampled so that it is not much bigger than the requested size. 
+	 * The callback is called on the main thread, immediately if the bitmap is already cached. Must be called on the main thread.
+	 */
+	static void loadResource(final Resources res, final int resId, final int reqWidth, final int reqHeight,
+			final String key, Callback callback) {
+		final Bitmap cached = CACHE.get(key);
+		if (cached != null) {
+			callback.onBitmapLoaded(key, cached);
+			return;
+		}
+		execute(key, callback, new Decoder() {
+			@Override
+			public Bitmap decode() {
+				return decodeResource(res, resId, reqWidth, reqHeight);
+			}
+		});
+	}
+
+	/**
+	 * A decode job run on the background thread
+	 */
+	interface Decoder {
+		Bitmap decode();
+	}
+
+	/**
+	 * Run a decode job in the background unless one for the same key is in flight, then cache the result and deliver it to every waiting callback.
+	 * Must be called on the main thread.
+	 */
+	static void execute(String key, Callback callback, Decoder decoder) {
+		execute(EXECUTOR, key, callback, decoder);
+	}
+
+	/**
+	 * Like {@link #execute(String, Callback, Decoder)}, but on a thread of lower priority that does not hold up other decodes. For thumbnails.
+	 */
+	static void executeLowPriority(String key, Callback callback, Decoder decoder) {
+		execute(LOW_PRIORITY_EXECUTOR, key, callback, decoder);
+	}
+
+	private static void execute(ExecutorService executor, final String key, Callback callback, final Decoder decoder) {
+		ArrayList<Callback> waiting = IN_FLIGHT.get(key);
+		if (waiting != null) {
+			waiting.add(callback);
+			return;
+		}
+		waiting = new ArrayList<Callback>(2);
+		waiting.add(callback);
+		IN_FLIGHT.put(key, waiting);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Bitmap decoded;
+				try {
+					decoded = decoder.decode();
+				} catch (OutOfMemoryError e) {
+					decoded = null;
+				}
+				final Bitmap bitmap = decoded;
+				MAIN_HANDLER.post(new Runnable() {
+					@Override
+					public void run() {
+						if (bitmap != null) {
+							CACHE.put(key, bitmap);
+						}
+						final ArrayList<Callback> callbacks = IN_FLIGHT.remove(key);
+						for (int i = 0; i < callbacks.size(); i++) {
+							callbacks.get(i).onBitmapLoaded(key, bitmap);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Decode a resource with the largest power-of-two subsampling that still keeps both sides at least as big as requested
+	 */
+	static Bitmap decodeResource(Resources res, int resId, int reqWidth, int reqHeight) {
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeResource(res, resId, options);
+		options.inSampleSize = sampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+		options.inJustDecodeBounds = false;
+		return BitmapFactory.decodeResource(res, resId, options);
+	}
+
+	static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+		int sampleSize = 1;
+		if (reqWidth <= 0 || reqHeight <= 0) {
+			return sampleSize;
+		}
+		while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+}
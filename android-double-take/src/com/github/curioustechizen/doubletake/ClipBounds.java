@@ -0,0 +1,36 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Helpers for clipping a view to a rectangle without a custom view, for the clip-reveal zoom.
+ * <p>
+ * {@code View.setClipBounds()} is only available from API 18 onwards. Callers check {@link #SUPPORTED} before using the other methods.
+ */
+final class ClipBounds {
+
+	/**
+	 * Whether the platform supports clip bounds on views
+	 */
+	static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+	private ClipBounds() {
+	}
+
+	/**
+	 * @param view The view to clip
+	 * @param clipBounds The clip, in the view's own coordinates. Copied by the view.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	static void set(View view, Rect clipBounds) {
+		view.setClipBounds(clipBounds);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	static void clear(View view) {
+		view.setClipBounds(null);
+	}
+}
@@ -0,0 +1,58 @@
+package com.github.curioustechizen.doubletake;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.view.ViewGroup;
+
+/**
+ * The visible bounds of a zoomed-in container, cached until it is laid out at different bounds or anything in its window scrolls. Shared by all the zooms of a
+ * {@link ContainerZoomController}, so the container's global rect is computed once rather than once per item.
+ * <p>
+ * Only used on the main thread.
+ */
+final class ContainerBounds {
+
+	private final ViewGroup mContainer;
+	// In the container's own coordinates, like ZoomAnimation.finalBounds
+	private final Rect mBounds = new Rect();
+	private final Point mGlobalOffset = new Point();
+	private boolean mValid;
+
+	private final LayoutWatcher mLayoutWatcher = new LayoutWatcher(new Runnable() {
+		@Override
+		public void run() {
+			mValid = false;
+		}
+	});
+
+	ContainerBounds(ViewGroup container) {
+		this.mContainer = container;
+	}
+
+	ViewGroup getContainer() {
+		return mContainer;
+	}
+
+	/**
+	 * @param outBounds Set to the visible bounds of the container, relative to its global offset
+	 * @param outGlobalOffset Set to the global offset of the container
+	 */
+	void get(Rect outBounds, Point outGlobalOffset) {
+		mLayoutWatcher.watch(mContainer, null);
+		if (!mValid) {
+			mContainer.getGlobalVisibleRect(mBounds, mGlobalOffset);
+			mBounds.offset(-mGlobalOffset.x, -mGlobalOffset.y);
+			// Not worth keeping until the container has been laid out
+			mValid = !mBounds.isEmpty() && !mContainer.isLayoutRequested();
+		}
+		outBounds.set(mBounds);
+		outGlobalOffset.set(mGlobalOffset.x, mGlobalOffset.y);
+	}
+
+	/**
+	 * Remove the invalidation listeners. They are registered again on the next {@link #get(Rect, Point)}.
+	 */
+	void release() {
+		mLayoutWatcher.release();
+	}
+}
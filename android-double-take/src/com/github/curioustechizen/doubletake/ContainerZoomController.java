@@ -0,0 +1,285 @@
+package com.github.curioustechizen.doubletake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnPreDrawListener;
+import android.view.animation.Interpolator;
+
+/**
+ * Coordinates the {@link ZoomAnimation}s that share one zoomed-in container, such as the pages of a zoomed-in gallery.
+ * <p>
+ * The controller knows which of its items is zoomed in. Zooming into another item while one is zoomed in switches between the two directly: 
+ * the current item shrinks back to its zoomed-out view while the new one grows from its own, both driven by a single animation. 
+ * This takes half the time of zooming out and then in again. The bounds of the container are computed once for all items and cached until the next layout.
+ * <p>
+ * Items whose zoomed-in view is the same view cannot be switched that way: the current one is then reset to its zoomed-out state at once, and the new one zooms in as usual.
+ * <p>
+ * Obtain an instance using {@link Builder}. Only to be used from the main thread.
+ */
+public class ContainerZoomController {
+
+	private static final AnimationBackend BACKEND = AnimationBackend.INSTANCE;
+
+	private final ViewGroup mContainer;
+	private final ContainerBounds mContainerBounds;
+	private final AnimationPolicy mPolicy;
+	private final List<ZoomAnimation> mItems = new ArrayList<ZoomAnimation>();
+
+	private final AnimationBackend.Driver mDriver;
+	// The items of the switch that is running or waiting for layout
+	private ZoomAnimation mFrom;
+	private ZoomAnimation mTo;
+	private boolean mPreDrawPending;
+
+	private ContainerZoomController(Builder builder) {
+		this.mContainer = builder.zoomedInContainer;
+		this.mContainerBounds = new ContainerBounds(builder.zoomedInContainer);
+		this.mPolicy = builder.policy;
+		mDriver = BACKEND.newDriver(builder.interpolator, mDriverCallback);
+		mDriver.setDuration(builder.animationTime);
+	}
+
+	/**
+	 * Builder for creating an instance of {@link ContainerZoomController}
+	 *
+	 */
+	public static class Builder {
+
+		private final ViewGroup zoomedInContainer;
+		private int animationTime;
+		private Interpolator interpolator = Easing.DECELERATE;
+		private AnimationPolicy policy = AnimationPolicy.DEFAULT;
+
+		/**
+		 * Constructor with mandatory parameters for the builder
+		 * @param zoomedInContainer The container that all items zoom into
+		 */
+		public Builder(ViewGroup zoomedInContainer) {
+			this.zoomedInContainer = zoomedInContainer;
+			animationTime = zoomedInContainer.getContext().getResources()
+					.getInteger(android.R.integer.config_shortAnimTime);
+		}
+
+		/**
+		 * Sets the duration of a switch between two items in milliseconds. Default is {@code android.R.integer.config_shortAnimTime}.
+		 * Zooms into and out of a single item take the duration of that item's animation.
+		 * @param animationTime The animation time in milliseconds
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder animationTime(int animationTime) {
+			this.animationTime = animationTime;
+			return this;
+		}
+
+		/**
+		 * Sets the easing curve of a switch between two items. Default is {@link Easing#DECELERATE}.
+		 * @see ZoomAnimation.Builder#interpolator(Interpolator)
+		 */
+		public Builder interpolator(Interpolator interpolator) {
+			this.interpolator = interpolator;
+			return this;
+		}
+
+		/**
+		 * Decides whether a switch between two items is animated at all. A switch has no cheaper variant, so {@link AnimationPolicy#REDUCED} runs it as usual.
+		 * Default is {@link AnimationPolicy#DEFAULT}.
+		 * @param policy The policy
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder policy(AnimationPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * Build the {@code ContainerZoomController} object with the specified properties
+		 * @return The {@code ContainerZoomController} object
+		 */
+		public ContainerZoomController build() {
+			return new ContainerZoomController(this);
+		}
+	}
+
+	private final AnimationBackend.Driver.Callback mDriverCallback = new AnimationBackend.Driver.Callback() {
+		@Override
+		public void onFrame(float fraction) {
+			mFrom.applySwitchFraction(fraction);
+			mTo.applySwitchFraction(fraction);
+		}
+
+		@Override
+		public void onEnd(boolean cancelled) {
+			Tracing.begin(cancelled ? Tracing.ZOOM_CANCEL : Tracing.ZOOM_END);
+			try {
+				final ZoomAnimation from = mFrom;
+				final ZoomAnimation to = mTo;
+				mFrom = null;
+				mTo = null;
+				// The new item last, so that it hides the zoomed-out container
+				from.endSwitch(cancelled);
+				to.endSwitch(cancelled);
+			} finally {
+				Tracing.end();
+			}
+		}
+	};
+
+	private final OnPreDrawListener mPreDrawListener = new OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			final boolean ready = isReady();
+			if (!ready && (mFrom.isLayoutPending() || mTo.isLayoutPending()
+					|| mTo.getZoomedInView().isLayoutRequested())) {
+				// Still waiting for layout. Let this frame draw and try again.
+				return true;
+			}
+			removePreDrawListener();
+			if (ready) {
+				startSwitch();
+			} else {
+				// One of the zoomed-out views is not on screen. Let each item
+				// deal with that on its own.
+				final ZoomAnimation from = mFrom;
+				final ZoomAnimation to = mTo;
+				mFrom = null;
+				mTo = null;
+				from.zoomOut();
+				to.zoomIn();
+			}
+			return true;
+		}
+	};
+
+	/**
+	 * Let this controller coordinate the item. Items are also added on their first {@link #zoomIn(ZoomAnimation)}, but only items added before
+	 * that are known to be zoomed in when they were zoomed in on their own, for example by their zoomed-out view's click listener or after a restore.
+	 * @param item A zoom into this controller's container
+	 * @throws IllegalArgumentException If the item zooms into another container
+	 */
+	public void addItem(ZoomAnimation item) {
+		if (item.getZoomedInContainer() != mContainer) {
+			throw new IllegalArgumentException("The item zooms into another container");
+		}
+		if (!mItems.contains(item)) {
+			mItems.add(item);
+			item.setContainerBounds(mContainerBounds);
+		}
+	}
+
+	/**
+	 * Zoom into the item. If another item is zoomed in, switch from that one to this one in a single animation.
+	 * @param item A zoom into this controller's container
+	 */
+	public void zoomIn(ZoomAnimation item) {
+		Tracing.begin(Tracing.ZOOM_SWITCH);
+		try {
+			addItem(item);
+			final ZoomAnimation current = getZoomedItem();
+			cancelSwitch();
+			if (current == null || current == item) {
+				item.zoomIn();
+				return;
+			}
+			final boolean created = item.ensureZoomedInView();
+			if (item.getZoomedInView() == current.getZoomedInView()) {
+				// One view cannot shrink and grow at the same time
+				current.jumpOut();
+				item.zoomIn();
+				return;
+			}
+			if (created) {
+				// Laid out, but not drawn, in the traversal the switch waits
+				// for. A view that is GONE would not be.
+				item.getZoomedInView().setVisibility(View.INVISIBLE);
+			}
+			mFrom = current;
+			mTo = item;
+			// Both zoomed-out views need to be laid out: the current item
+			// returns to one, the new one starts from the other
+			final boolean shown = current.showZoomedOutContainer() | item.showZoomedOutContainer();
+			if (!shown && isReady()) {
+				startSwitch();
+			} else {
+				// Start in the pre-draw pass of the coming traversal. Nothing is
+				// drawn in between.
+				mContainer.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+				mPreDrawPending = true;
+			}
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	/**
+	 * Zoom out of the item that is zoomed in, if any
+	 */
+	public void zoomOut() {
+		final ZoomAnimation current = getZoomedItem();
+		if (current != null) {
+			current.zoomOut();
+		}
+	}
+
+	/**
+	 * @return The item that is zoomed in, or being zoomed or switched into. {@code null} if none.
+	 */
+	public ZoomAnimation getZoomedItem() {
+		if (mTo != null) {
+			return mTo;
+		}
+		for (int i = mItems.size() - 1; i >= 0; i--) {
+			final ZoomAnimation item = mItems.get(i);
+			if (item.isZoomedIn()) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Cancel a running or pending switch and remove the listeners this controller installed. The items themselves are left alone; release them separately.
+	 */
+	public void release() {
+		cancelSwitch();
+		mContainerBounds.release();
+	}
+
+	/**
+	 * @return Whether both geometries are known and the new item's zoomed-in view has been laid out
+	 */
+	private boolean isReady() {
+		return mFrom.prepareGeometry() & mTo.prepareGeometry() && !mTo.getZoomedInView().isLayoutRequested();
+	}
+
+	private void startSwitch() {
+		final int decision = mPolicy.decideFor(mContainer);
+		mFrom.beginSwitch(false, mDriver);
+		mTo.beginSwitch(true, mDriver);
+		mDriver.start();
+		if (decision == AnimationPolicy.SKIP) {
+			mDriver.end();
+		}
+	}
+
+	private void cancelSwitch() {
+		removePreDrawListener();
+		// Clears mFrom and mTo through the end callback
+		mDriver.cancel();
+		mFrom = null;
+		mTo = null;
+	}
+
+	private void removePreDrawListener() {
+		if (mPreDrawPending) {
+			final ViewTreeObserver observer = mContainer.getViewTreeObserver();
+			if (observer.isAlive()) {
+				observer.removeOnPreDrawListener(mPreDrawListener);
+			}
+			mPreDrawPending = false;
+		}
+	}
+}
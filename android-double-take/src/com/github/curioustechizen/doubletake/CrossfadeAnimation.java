@@ -2,31 +2,54 @@ package com.github.curioustechizen.doubletake;
 
 
 import android.view.View;
+import android.view.animation.Interpolator;
 
-import com.nineoldandroids.animation.Animator;
-import com.nineoldandroids.animation.AnimatorListenerAdapter;
-import com.nineoldandroids.view.ViewHelper;
-import com.nineoldandroids.view.ViewPropertyAnimator;
 
 /**
  * A class representing a crossfade animation between two views. There is an <em>InView</em> and an <em>OutView</em>. The <em>InView</em> fades in simultaneously as <em>OutView</em> fades out.
  * <p>
  * Works best when <em>InView</em> takes up the area vacated by <em>OutView</em> - but this is not necessary.
  * <p>
+ * A crossfade takes over any crossfade still running on either of its views: the other one is cancelled and this one continues from the current alpha values,
+ * with its duration shortened to match the remaining distance. Toggling rapidly between two states therefore never stacks animations up.
+ * Build one instance per direction and reuse it; {@link #animate()} allocates nothing.
+ * <p>
  * Obtain an instance using {@link Builder} 
  * @author Kiran Rao
  *
  */
 public class CrossfadeAnimation {
 
+	private static final AnimationBackend BACKEND = AnimationBackend.INSTANCE;
+
 	private final View mOutView;
 	private final View mInView;
 	private final int mAnimationTime;
+	private final boolean mHardwareLayer;
+	private final FrameMetricsRecorder mMetricsRecorder;
+	private final AnimationPolicy mPolicy;
+	// Read once on the building thread, since requests may come from any
+	// thread. Also the view the policy is asked about on every run.
+	private final View mContainer;
+	private int mInPreviousLayerType = HardwareLayers.NOT_SET;
+	private int mOutPreviousLayerType = HardwareLayers.NOT_SET;
+
+	private final AnimationBackend.Driver mDriver;
+	private float mFromInAlpha;
+	private float mFromOutAlpha;
 
-	private CrossfadeAnimation(View inView, View outView, int animationTime) {
+	private CrossfadeAnimation(View inView, View outView, int animationTime, Interpolator interpolator,
+			boolean hardwareLayer, AnimationPolicy policy, AnimationMetricsListener metricsListener) {
 		this.mInView = inView;
 		this.mOutView = outView;
 		this.mAnimationTime = animationTime;
+		this.mHardwareLayer = hardwareLayer;
+		this.mPolicy = policy;
+		this.mContainer = policyView(inView);
+		this.mMetricsRecorder = metricsListener == null ? null
+				: new FrameMetricsRecorder(inView, metricsListener);
+
+		mDriver = BACKEND.newDriver(interpolator, mDriverCallback);
 	}
 
 	/**
@@ -38,6 +61,10 @@ public class CrossfadeAnimation {
 
 		private View inView, outView;
 		private int animationTime;
+		private Interpolator interpolator = Easing.ACCELERATE_DECELERATE;
+		private boolean hardwareLayer;
+		private AnimationPolicy policy = AnimationPolicy.DEFAULT;
+		private AnimationMetricsListener metricsListener;
 
 		/**
 		 * Creates a Builder with the mandatory parameters
@@ -49,6 +76,7 @@ public class CrossfadeAnimation {
 			this.outView = outView;
 			animationTime = inView.getContext().getResources()
 					.getInteger(android.R.integer.config_shortAnimTime);
+			hardwareLayer = HardwareLayers.SUPPORTED;
 		}
 
 		/**
@@ -61,36 +89,183 @@ public class CrossfadeAnimation {
 			return this;
 		}
 
+		/**
+		 * Sets the easing curve of the crossfade. Default is {@link Easing#ACCELERATE_DECELERATE}. See {@link ZoomAnimation.Builder#interpolator(Interpolator)}
+		 * @param interpolator The easing curve
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder interpolator(Interpolator interpolator) {
+			this.interpolator = interpolator;
+			return this;
+		}
+
+		/**
+		 * Whether the two views should be put on a hardware layer while they fade. The previous layer types are restored when the animation ends or is cancelled.
+		 * Default is {@code true} on API 11 and above. Has no effect below API 11, or if the window is not hardware accelerated.
+		 * @param hardwareLayer {@code true} to fade on hardware layers
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder hardwareLayer(boolean hardwareLayer) {
+			this.hardwareLayer = hardwareLayer;
+			return this;
+		}
+
+		/**
+		 * Decides whether to run the crossfade at all, and when to finish a run that drops frames right away. A crossfade has no cheaper variant, so
+		 * {@link AnimationPolicy#REDUCED} runs it as usual. Default is {@link AnimationPolicy#DEFAULT}.
+		 * @param policy The policy
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder policy(AnimationPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * Register a listener that receives frame timing statistics after every run. Optional; without a listener nothing is measured.
+		 * @param metricsListener The listener, or {@code null} to measure nothing
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder metricsListener(AnimationMetricsListener metricsListener) {
+			this.metricsListener = metricsListener;
+			return this;
+		}
+
 		/**
 		 * Build the {@code CrossfadeAnimation} object
 		 * @return The {@code CrossfadeAnimation} object
 		 */
 		public CrossfadeAnimation build() {
-			return new CrossfadeAnimation(inView, outView, animationTime);
+			return new CrossfadeAnimation(inView, outView, animationTime, interpolator, hardwareLayer, policy, metricsListener);
 		}
 	}
 
+	private final AnimationBackend.Driver.Callback mDriverCallback = new AnimationBackend.Driver.Callback() {
+		@Override
+		public void onFrame(float fraction) {
+			if (mDriver.isRunning() && mPolicy.shouldDowngrade(mDriver.getDroppedFrames())) {
+				// Finish now rather than keep dropping frames
+				mDriver.end();
+				return;
+			}
+			applyFraction(fraction);
+		}
+
+		@Override
+		public void onEnd(boolean cancelled) {
+			Tracing.begin(cancelled ? Tracing.CROSSFADE_CANCEL : Tracing.CROSSFADE_END);
+			try {
+				// A cancelled crossfade leaves the views to whoever cancelled it.
+				unregister(mInView);
+				unregister(mOutView);
+				restoreInLayer();
+				restoreOutLayer();
+				if (!cancelled) {
+					mOutView.setVisibility(View.GONE);
+				}
+				if (mMetricsRecorder != null) {
+					mMetricsRecorder.end(cancelled);
+				}
+			} finally {
+				Tracing.end();
+			}
+		}
+	};
+
 	/**
 	 * Run the crossfade animation
 	 */
 	public void animate() {
-		ViewHelper.setAlpha(mInView, 0);
-		mInView.setVisibility(View.VISIBLE);
-		ViewPropertyAnimator.animate(mInView).alpha(1f)
-			.setDuration(mAnimationTime)
-			.setListener(null);
-
-		ViewPropertyAnimator.animate(mOutView)
-			.alpha(0f)
-			.setDuration(mAnimationTime)
-			.setListener(new AnimatorListenerAdapter() {
-				@Override
-				public void onAnimationEnd(Animator animation) {
-					mOutView.setVisibility(View.GONE);
-				}
+		Tracing.begin(Tracing.CROSSFADE_ANIMATE);
+		try {
+			final long initStart = mMetricsRecorder == null ? 0 : System.nanoTime();
+			// Take over from any crossfade still running on either view, including
+			// this one. The in-view continues from its current alpha only if it
+			// was being faded by such a crossfade.
+			final boolean inViewAnimating = cancelRegistered(mInView);
+			cancelRegistered(mOutView);
+
+			mFromInAlpha = inViewAnimating ? BACKEND.getAlpha(mInView) : 0f;
+			mFromOutAlpha = mOutView.getVisibility() == View.GONE ? 0f : BACKEND.getAlpha(mOutView);
+			BACKEND.setAlpha(mInView, mFromInAlpha);
+			mInView.setVisibility(View.VISIBLE);
+			final boolean skip = mPolicy.decideFor(mContainer) == AnimationPolicy.SKIP;
+			if (mHardwareLayer && !skip) {
+				mInPreviousLayerType = HardwareLayers.enable(mInView);
+				mOutPreviousLayerType = HardwareLayers.enable(mOutView);
+			}
+			mInView.setTag(R.id.doubletake_crossfade, this);
+			mOutView.setTag(R.id.doubletake_crossfade, this);
 
-			});
+			// Only the remaining distance is animated, at the same speed as a full
+			// crossfade.
+			final float distance = Math.max(1f - mFromInAlpha, mFromOutAlpha);
+			mDriver.setDuration((long) (mAnimationTime * distance));
+			if (mMetricsRecorder != null) {
+				mMetricsRecorder.begin(AnimationMetrics.TYPE_CROSSFADE, mDriver.getDuration(), System.nanoTime() - initStart);
+			}
+			mDriver.start();
+			if (skip) {
+				mDriver.end();
+			}
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	/**
+	 * The view whose visibility on screen decides on the whole crossfade: the parent of the in-view, which is still hidden when this is asked
+	 */
+	static View policyView(View inView) {
+		return inView.getParent() instanceof View ? (View) inView.getParent() : inView;
+	}
+
+	/**
+	 * @return The view requests for this crossfade are coalesced on, see {@link AnimationRequestQueue}. The parent of the in-view when the crossfade was built.
+	 */
+	View getContainer() {
+		return mContainer;
+	}
+
+	/**
+	 * Cancel the crossfade if it is running. Both views are left where they are.
+	 */
+	public void cancel() {
+		mDriver.cancel();
+	}
+
+	private void applyFraction(float fraction) {
+		BACKEND.setAlpha(mInView, mFromInAlpha + (1f - mFromInAlpha) * fraction);
+		BACKEND.setAlpha(mOutView, mFromOutAlpha * (1f - fraction));
+	}
+
+	/**
+	 * Cancel the crossfade registered on the view, if any
+	 * @return {@code true} if a crossfade was running on the view
+	 */
+	private static boolean cancelRegistered(View view) {
+		final Object running = view.getTag(R.id.doubletake_crossfade);
+		if (running instanceof CrossfadeAnimation) {
+			((CrossfadeAnimation) running).cancel();
+			return true;
+		}
+		return false;
+	}
+
+	private void unregister(View view) {
+		if (view.getTag(R.id.doubletake_crossfade) == this) {
+			view.setTag(R.id.doubletake_crossfade, null);
+		}
+	}
+
+	private void restoreInLayer() {
+		HardwareLayers.restore(mInView, mInPreviousLayerType);
+		mInPreviousLayerType = HardwareLayers.NOT_SET;
+	}
+
+	private void restoreOutLayer() {
+		HardwareLayers.restore(mOutView, mOutPreviousLayerType);
+		mOutPreviousLayerType = HardwareLayers.NOT_SET;
 	}
-	
 	
 }
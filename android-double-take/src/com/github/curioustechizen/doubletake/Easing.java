@@ -0,0 +1,134 @@
+package com.github.curioustechizen.doubletake;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Easing curves for double-take animations, baked into lookup tables.
+ * <p>
+ * Each curve is sampled once into a table of floats when it is created. {@link #getInterpolation(float)} is then a table lookup and a linear interpolation between two samples,
+ * instead of the {@code Math.pow} or {@code Math.cos} call that the framework interpolators make on every frame. Instances are immutable and can be shared freely
+ * between animations and threads; the built-in curves are constants.
+ * <p>
+ * Pass a curve to the {@code interpolator()} method of any of the animation builders, for example {@link ZoomAnimation.Builder#interpolator(Interpolator)}.
+ */
+public final class Easing implements Interpolator {
+
+	private static final int SAMPLES = 256;
+
+	/**
+	 * Starts fast and slows down towards the end. Same curve as {@code DecelerateInterpolator} with the default factor. The default for zoom animations.
+	 */
+	public static final Easing DECELERATE = new Easing(new Curve() {
+		@Override
+		public float valueAt(float t) {
+			return 1f - (1f - t) * (1f - t);
+		}
+	});
+
+	/**
+	 * Starts slowly, speeds up and slows down again. Same curve as {@code AccelerateDecelerateInterpolator}. The default for crossfades.
+	 */
+	public static final Easing ACCELERATE_DECELERATE = new Easing(new Curve() {
+		@Override
+		public float valueAt(float t) {
+			return (float) (Math.cos((t + 1) * Math.PI) / 2.0) + 0.5f;
+		}
+	});
+
+	/**
+	 * A damped spring: overshoots the end value, swings back and settles. Ends exactly at 1.
+	 */
+	public static final Easing OVERSHOOT = new Easing(new Curve() {
+		@Override
+		public float valueAt(float t) {
+			// cos(2.5 * pi) == 0, so the curve ends exactly at 1
+			return (float) (1.0 - Math.exp(-6.0 * t) * Math.cos(2.5 * Math.PI * t));
+		}
+	});
+
+	/**
+	 * A continuous curve to be sampled, defined on [0, 1]
+	 */
+	private interface Curve {
+		float valueAt(float t);
+	}
+
+	private final float[] mTable = new float[SAMPLES + 1];
+
+	private Easing(Curve curve) {
+		for (int i = 0; i <= SAMPLES; i++) {
+			mTable[i] = curve.valueAt((float) i / SAMPLES);
+		}
+		// Pin the ends so that animations land exactly on their end values
+		mTable[0] = 0f;
+		mTable[SAMPLES] = 1f;
+	}
+
+	/**
+	 * Bake a cubic Bezier curve from (0, 0) to (1, 1), as in CSS {@code cubic-bezier()}.
+	 * @param x1 X of the first control point, within [0, 1]
+	 * @param y1 Y of the first control point
+	 * @param x2 X of the second control point, within [0, 1]
+	 * @param y2 Y of the second control point
+	 * @return A new curve. Create it once and keep it; baking it is not free.
+	 */
+	public static Easing cubicBezier(final float x1, final float y1, final float x2, final float y2) {
+		return new Easing(new Curve() {
+			@Override
+			public float valueAt(float x) {
+				// The curve is given in terms of a parameter u. Find the u for
+				// which bezier_x(u) == x by bisection (x is monotonic in u when
+				// the control points are within [0, 1]), then evaluate y.
+				float low = 0f;
+				float high = 1f;
+				float u = x;
+				for (int i = 0; i < 32; i++) {
+					final float bx = bezier(u, x1, x2);
+					if (Math.abs(bx - x) < 1e-6f) {
+						break;
+					}
+					if (bx < x) {
+						low = u;
+					} else {
+						high = u;
+					}
+					u = (low + high) / 2f;
+				}
+				return bezier(u, y1, y2);
+			}
+		});
+	}
+
+	/**
+	 * Bake any interpolator into a lookup table. Useful for expensive custom interpolators that are evaluated on every frame.
+	 * @param interpolator The interpolator to sample. Only called from this method.
+	 * @return A new curve that approximates the interpolator
+	 */
+	public static Easing of(final Interpolator interpolator) {
+		return new Easing(new Curve() {
+			@Override
+			public float valueAt(float t) {
+				return interpolator.getInterpolation(t);
+			}
+		});
+	}
+
+	private static float bezier(float u, float p1, float p2) {
+		final float inv = 1f - u;
+		return 3f * inv * inv * u * p1 + 3f * inv * u * u * p2 + u * u * u;
+	}
+
+	@Override
+	public float getInterpolation(float input) {
+		if (input <= 0f) {
+			return 0f;
+		}
+		if (input >= 1f) {
+			return 1f;
+		}
+		final float position = input * SAMPLES;
+		final int index = (int) position;
+		final float weight = position - index;
+		return mTable[index] + (mTable[index + 1] - mTable[index]) * weight;
+	}
+}
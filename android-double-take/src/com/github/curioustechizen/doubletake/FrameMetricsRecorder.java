@@ -0,0 +1,153 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+
+/**
+ * Records the frame times of one animation run and reports them to an {@link AnimationMetricsListener}.
+ * <p>
+ * Only created when a listener has been registered, so animations without one pay nothing. On API 16+ frames are timed with a {@link Choreographer} callback,
+ * on older platforms with an idle {@link AnimationBackend.Driver}, which ticks on the same handler as the real animation.
+ */
+final class FrameMetricsRecorder {
+
+	private static final boolean CHOREOGRAPHER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+	private final AnimationMetricsListener mListener;
+	// The refresh interval of the display, fixed for a run
+	private long mFrameIntervalNanos;
+
+	private long[] mDeltas = new long[64];
+	private int mDeltaCount;
+	private long mLastFrameNanos;
+	private int mDroppedFrames;
+
+	private boolean mRecording;
+	private int mType;
+	private long mPlannedDurationMillis;
+	private long mInitTimeNanos;
+	private long mStartNanos;
+
+	private Object mFrameCallback;
+	private AnimationBackend.Driver mTicker;
+
+	FrameMetricsRecorder(View view, AnimationMetricsListener listener) {
+		this.mListener = listener;
+		SystemAnimationSettings.init(view.getContext());
+	}
+
+	/**
+	 * Start recording a run. Ends any run still being recorded, as cancelled.
+	 * @param type One of the {@code AnimationMetrics.TYPE_*} constants
+	 * @param plannedDurationMillis The configured duration of the animation, before the animator duration scale that the engine runs it at
+	 * @param initTimeNanos The time the animation spent setting up before this call
+	 */
+	void begin(int type, long plannedDurationMillis, long initTimeNanos) {
+		if (mRecording) {
+			end(true);
+		}
+		mType = type;
+		// What the engine will actually run, to compare the actual duration to
+		mPlannedDurationMillis = (long) (plannedDurationMillis * SystemAnimationSettings.getDurationScale());
+		mInitTimeNanos = initTimeNanos;
+		mDeltaCount = 0;
+		mDroppedFrames = 0;
+		mLastFrameNanos = 0;
+		// Counted against the same interval as the engine's dropped frames
+		mFrameIntervalNanos = SystemAnimationSettings.getFrameIntervalNanos();
+		mStartNanos = System.nanoTime();
+		mRecording = true;
+		if (CHOREOGRAPHER) {
+			postFrameCallback();
+		} else {
+			startTicker();
+		}
+	}
+
+	/**
+	 * Stop recording and deliver the metrics of the run to the listener. Does nothing if no run is being recorded.
+	 * @param cancelled Whether the animation was cancelled
+	 */
+	void end(boolean cancelled) {
+		if (!mRecording) {
+			return;
+		}
+		mRecording = false;
+		if (CHOREOGRAPHER) {
+			removeFrameCallback();
+		} else {
+			mTicker.cancel();
+		}
+		final long actualNanos = System.nanoTime() - mStartNanos;
+		final long[] deltas = new long[mDeltaCount];
+		System.arraycopy(mDeltas, 0, deltas, 0, mDeltaCount);
+		mListener.onAnimationMetrics(new AnimationMetrics(mType, mPlannedDurationMillis, actualNanos, deltas,
+				mDroppedFrames, mInitTimeNanos, mFrameIntervalNanos, cancelled));
+	}
+
+	private void recordFrame(long frameTimeNanos) {
+		if (mLastFrameNanos != 0) {
+			final long delta = frameTimeNanos - mLastFrameNanos;
+			if (mDeltaCount == mDeltas.length) {
+				final long[] grown = new long[mDeltas.length * 2];
+				System.arraycopy(mDeltas, 0, grown, 0, mDeltaCount);
+				mDeltas = grown;
+			}
+			mDeltas[mDeltaCount++] = delta;
+			// A delta of n intervals means n - 1 refreshes went by without a frame
+			final long missed = (delta + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+			if (missed > 0) {
+				mDroppedFrames += missed;
+			}
+		}
+		mLastFrameNanos = frameTimeNanos;
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void postFrameCallback() {
+		if (mFrameCallback == null) {
+			mFrameCallback = new FrameCallback() {
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					if (mRecording) {
+						recordFrame(frameTimeNanos);
+						Choreographer.getInstance().postFrameCallback(this);
+					}
+				}
+			};
+		}
+		Choreographer.getInstance().postFrameCallback((FrameCallback) mFrameCallback);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void removeFrameCallback() {
+		Choreographer.getInstance().removeFrameCallback((FrameCallback) mFrameCallback);
+	}
+
+	private void startTicker() {
+		if (mTicker == null) {
+			mTicker = AnimationBackend.INSTANCE.newDriver(new LinearInterpolator(), new AnimationBackend.Driver.Callback() {
+				@Override
+				public void onFrame(float fraction) {
+					if (mRecording) {
+						recordFrame(System.nanoTime());
+					}
+				}
+
+				@Override
+				public void onEnd(boolean cancelled) {
+					// Keep ticking for as long as the animation runs
+					if (!cancelled && mRecording) {
+						mTicker.start();
+					}
+				}
+			});
+			mTicker.setDuration(10000);
+		}
+		mTicker.start();
+	}
+}
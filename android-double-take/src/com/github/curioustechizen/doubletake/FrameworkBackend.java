@@ -0,0 +1,57 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * {@link AnimationBackend} on top of the framework view properties, for API 11 and above. Property writes go straight to the {@code View} setters, 
+ * without the proxy and wrapper layers of nineoldandroids.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+final class FrameworkBackend extends AnimationBackend {
+
+	@Override
+	void setTransform(View view, float x, float y, float scaleX, float scaleY) {
+		view.setX(x);
+		view.setY(y);
+		view.setScaleX(scaleX);
+		view.setScaleY(scaleY);
+	}
+
+	@Override
+	float getX(View view) {
+		return view.getX();
+	}
+
+	@Override
+	float getY(View view) {
+		return view.getY();
+	}
+
+	@Override
+	float getScaleX(View view) {
+		return view.getScaleX();
+	}
+
+	@Override
+	float getScaleY(View view) {
+		return view.getScaleY();
+	}
+
+	@Override
+	void setPivot(View view, float pivotX, float pivotY) {
+		view.setPivotX(pivotX);
+		view.setPivotY(pivotY);
+	}
+
+	@Override
+	void setAlpha(View view, float alpha) {
+		view.setAlpha(alpha);
+	}
+
+	@Override
+	float getAlpha(View view) {
+		return view.getAlpha();
+	}
+}
@@ -0,0 +1,85 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Helpers for putting a view on a hardware layer for the length of an animation.
+ * <p>
+ * Hardware layers are only available from API 11 onwards. On older platforms the animations go through the nineoldandroids proxy and every method here is a no-op.
+ */
+final class HardwareLayers {
+
+	/**
+	 * Whether the platform supports view layers at all
+	 */
+	static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+
+	/**
+	 * Returned by {@link #enable(View)} when the layer type of the view was left alone
+	 */
+	static final int NOT_SET = -1;
+
+	private HardwareLayers() {
+	}
+
+	/**
+	 * Put the view on a hardware layer, if the platform and the window support it, and render the layer right away.
+	 * @param view The view that is about to be animated
+	 * @return The previous layer type of the view, to be passed to {@link #restore(View, int)} once the animation is over. {@link #NOT_SET} if nothing was changed.
+	 */
+	static int enable(View view) {
+		return enable(view, true);
+	}
+
+	/**
+	 * Put the view on a hardware layer, if the platform and the window support it.
+	 * @param view The view that is about to be animated
+	 * @param buildNow Whether to render the layer right away, rather than when the view is next drawn. Building many layers at once stalls the main thread.
+	 * @return The previous layer type of the view, to be passed to {@link #restore(View, int)} once the animation is over. {@link #NOT_SET} if nothing was changed.
+	 */
+	static int enable(View view, boolean buildNow) {
+		if (!SUPPORTED || view == null) {
+			return NOT_SET;
+		}
+		return enableLayer(view, buildNow);
+	}
+
+	/**
+	 * Restore the layer type saved by {@link #enable(View)}. Safe to call more than once, and with {@link #NOT_SET}.
+	 * @param view The view that was animated
+	 * @param previousLayerType The value returned by {@link #enable(View)}
+	 */
+	static void restore(View view, int previousLayerType) {
+		if (!SUPPORTED || view == null || previousLayerType == NOT_SET) {
+			return;
+		}
+		restoreLayer(view, previousLayerType);
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static int enableLayer(View view, boolean buildNow) {
+		// Without hardware acceleration a "hardware" layer silently becomes a
+		// software one, which is more expensive to keep than no layer at all.
+		if (!view.isHardwareAccelerated()) {
+			return NOT_SET;
+		}
+		final int previous = view.getLayerType();
+		if (previous == View.LAYER_TYPE_HARDWARE) {
+			return NOT_SET;
+		}
+		view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+		// Render the layer now rather than on the first animation frame.
+		// buildLayer() throws if the view is not attached yet.
+		if (buildNow && view.getWindowToken() != null) {
+			view.buildLayer();
+		}
+		return previous;
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static void restoreLayer(View view, int previousLayerType) {
+		view.setLayerType(previousLayerType, null);
+	}
+}
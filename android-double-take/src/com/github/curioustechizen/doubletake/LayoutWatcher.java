@@ -0,0 +1,139 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+import android.view.View.OnLayoutChangeListener;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnGlobalLayoutListener;
+import android.view.ViewTreeObserver.OnScrollChangedListener;
+
+/**
+ * Tells its owner when the bounds of up to two views may have moved, so that bounds computed from them can be cached until then: when either view is laid out
+ * at different bounds, or anything in their window scrolls. Layout passes that leave both views where they were, such as the ones caused by showing or hiding
+ * the zoomed-in view, do not count. Before API 11, which cannot listen to the layout of a single view, every layout pass in the window counts.
+ * Used by {@link ZoomAnimation} for its geometry and by {@link ContainerBounds} for the bounds of a shared container.
+ * <p>
+ * The layout listeners are held by the views, and the scroll listener by the window's {@code ViewTreeObserver}; both hold the owner strongly. They stay
+ * registered until {@link #release()}. Only used on the main thread.
+ */
+final class LayoutWatcher implements OnGlobalLayoutListener, OnScrollChangedListener {
+
+	private final Runnable mOnChanged;
+	private ViewTreeObserver mTreeObserver;
+	// The views watched for their own layout changes, from API 11
+	private View mFirstView;
+	private View mSecondView;
+	private Object mLayoutChangeListener;
+
+	/**
+	 * @param onChanged Run whenever the cached bounds may be stale: after a layout change of a watched view or a scroll, and when the listeners are released
+	 */
+	LayoutWatcher(Runnable onChanged) {
+		this.mOnChanged = onChanged;
+	}
+
+	@Override
+	public void onGlobalLayout() {
+		mOnChanged.run();
+	}
+
+	@Override
+	public void onScrollChanged() {
+		mOnChanged.run();
+	}
+
+	/**
+	 * Register the listeners on the given views, unless they already are. Registering does not invalidate anything by itself: the views are either laid
+	 * out where the cached bounds say, or their next layout reports the change.
+	 * @param firstView A view to watch
+	 * @param secondView Another view to watch, or {@code null}
+	 */
+	@SuppressWarnings("deprecation")
+	void watch(View firstView, View secondView) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			watchLayoutChanges(firstView, secondView);
+		}
+		// The window's observer, once the view is attached to one
+		final ViewTreeObserver observer = firstView.getViewTreeObserver();
+		if (observer == mTreeObserver) {
+			return;
+		}
+		if (mTreeObserver != null && mTreeObserver.isAlive()) {
+			removeTreeListeners(mTreeObserver);
+		}
+		// A floating observer hands its listeners over when the view is
+		// attached, so remove before adding to avoid double registration.
+		removeTreeListeners(observer);
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+			observer.addOnGlobalLayoutListener(this);
+		}
+		observer.addOnScrollChangedListener(this);
+		mTreeObserver = observer;
+	}
+
+	/**
+	 * Remove the listeners, which makes the cached bounds stale. They are registered again on the next {@link #watch(View, View)}.
+	 */
+	void release() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			watchLayoutChanges(null, null);
+		}
+		if (mTreeObserver == null) {
+			return;
+		}
+		if (mTreeObserver.isAlive()) {
+			removeTreeListeners(mTreeObserver);
+		}
+		mTreeObserver = null;
+		mOnChanged.run();
+	}
+
+	@SuppressWarnings("deprecation")
+	private void removeTreeListeners(ViewTreeObserver observer) {
+		observer.removeGlobalOnLayoutListener(this);
+		observer.removeOnScrollChangedListener(this);
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private void watchLayoutChanges(View firstView, View secondView) {
+		if (firstView == mFirstView && secondView == mSecondView) {
+			return;
+		}
+		if (mLayoutChangeListener == null) {
+			mLayoutChangeListener = new LayoutChangeListener(mOnChanged);
+		}
+		final OnLayoutChangeListener listener = (OnLayoutChangeListener) mLayoutChangeListener;
+		if (mFirstView != null) {
+			mFirstView.removeOnLayoutChangeListener(listener);
+		}
+		if (mSecondView != null) {
+			mSecondView.removeOnLayoutChangeListener(listener);
+		}
+		if (firstView != null) {
+			firstView.addOnLayoutChangeListener(listener);
+		}
+		if (secondView != null) {
+			secondView.addOnLayoutChangeListener(listener);
+		}
+		mFirstView = firstView;
+		mSecondView = secondView;
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static final class LayoutChangeListener implements OnLayoutChangeListener {
+
+		private final Runnable mOnChanged;
+
+		LayoutChangeListener(Runnable onChanged) {
+			this.mOnChanged = onChanged;
+		}
+
+		@Override
+		public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+			if (left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom) {
+				mOnChanged.run();
+			}
+		}
+	}
+}
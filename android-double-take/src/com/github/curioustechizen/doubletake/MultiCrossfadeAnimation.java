@@ -0,0 +1,312 @@
+package com.github.curioustechizen.doubletake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.view.View;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+
+
+/**
+ * A crossfade between many pairs of views at once, for example when a whole grid of tiles swaps content. Each pair behaves like a {@link CrossfadeAnimation}:
+ * its <em>InView</em> fades in while its <em>OutView</em> fades out, and the <em>OutView</em> is set to {@code GONE} at the end.
+ * <p>
+ * All pairs are driven by a single animator instead of two per pair, so starting the animation costs the same whether there are two pairs or fifty.
+ * Pairs can optionally be staggered, each one starting a fixed delay after the previous one.
+ * <p>
+ * Obtain an instance using {@link Builder}
+ */
+public class MultiCrossfadeAnimation {
+
+	private static final AnimationBackend BACKEND = AnimationBackend.INSTANCE;
+
+	private final View[] mInViews;
+	private final View[] mOutViews;
+	private final int mAnimationTime;
+	private final Interpolator mPairInterpolator;
+	private final boolean mHardwareLayer;
+	private final FrameMetricsRecorder mMetricsRecorder;
+	private final AnimationPolicy mPolicy;
+	// Read once on the building thread, since requests may come from any
+	// thread. Also the view the policy is asked about on every run.
+	private final View mContainer;
+
+	// Offset table: pair i fades between mStartFractions[i] and
+	// mStartFractions[i] + mSpanFraction of the overall (linear) progress.
+	private final float[] mStartFractions;
+	private final float mSpanFraction;
+	private final float[] mLastFractions;
+	private final int[] mPreviousLayerTypes;
+	// Whether the pairs of the current run go on hardware layers while they fade
+	private boolean mLayersInRun;
+
+	private final AnimationBackend.Driver mDriver;
+
+	private MultiCrossfadeAnimation(Builder builder) {
+		final int count = builder.inViews.size();
+		this.mInViews = builder.inViews.toArray(new View[count]);
+		this.mOutViews = builder.outViews.toArray(new View[count]);
+		this.mAnimationTime = builder.animationTime;
+		this.mPairInterpolator = builder.interpolator;
+		this.mHardwareLayer = builder.hardwareLayer;
+		this.mPolicy = builder.policy;
+		this.mContainer = CrossfadeAnimation.policyView(mInViews[0]);
+		this.mMetricsRecorder = builder.metricsListener == null ? null
+				: new FrameMetricsRecorder(mInViews[0], builder.metricsListener);
+
+		final long totalTime = mAnimationTime + (long) builder.staggerDelay * (count - 1);
+		mStartFractions = new float[count];
+		for (int i = 0; i < count; i++) {
+			mStartFractions[i] = totalTime == 0 ? 0f : (float) ((long) builder.staggerDelay * i) / totalTime;
+		}
+		mSpanFraction = totalTime == 0 ? 1f : (float) mAnimationTime / totalTime;
+		mLastFractions = new float[count];
+		mPreviousLayerTypes = new int[count * 2];
+		Arrays.fill(mPreviousLayerTypes, HardwareLayers.NOT_SET);
+
+		// Each pair applies its own easing over its own span
+		mDriver = BACKEND.newDriver(new LinearInterpolator(), mDriverCallback);
+		mDriver.setDuration(totalTime);
+	}
+
+	/**
+	 * Builder for creating an instance of {@link MultiCrossfadeAnimation}
+	 *
+	 */
+	public static class Builder {
+
+		private final ArrayList<View> inViews = new ArrayList<View>();
+		private final ArrayList<View> outViews = new ArrayList<View>();
+		private int animationTime;
+		private int staggerDelay;
+		private Interpolator interpolator = Easing.ACCELERATE_DECELERATE;
+		private boolean hardwareLayer;
+		private AnimationPolicy policy = AnimationPolicy.DEFAULT;
+		private AnimationMetricsListener metricsListener;
+
+		/**
+		 * Creates a Builder with the first pair of views
+		 * @param inView The View to fade in
+		 * @param outView The view to fade out
+		 */
+		public Builder(View inView, View outView) {
+			animationTime = inView.getContext().getResources()
+					.getInteger(android.R.integer.config_shortAnimTime);
+			hardwareLayer = HardwareLayers.SUPPORTED;
+			add(inView, outView);
+		}
+
+		/**
+		 * Adds another pair of views to crossfade
+		 * @param inView The View to fade in
+		 * @param outView The view to fade out
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder add(View inView, View outView) {
+			inViews.add(inView);
+			outViews.add(outView);
+			return this;
+		}
+
+		/**
+		 * Sets the duration of the crossfade of each pair in milliseconds. Default is {@code android.R.integer.config_shortAnimTime}
+		 * @param animationTime The animation time in milliseconds
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder animationTime(int animationTime) {
+			this.animationTime = animationTime;
+			return this;
+		}
+
+		/**
+		 * Sets the delay between the start of one pair and the start of the next, in the order they were added. Default is 0: all pairs fade together.
+		 * @param staggerDelay The delay in milliseconds
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder staggerDelay(int staggerDelay) {
+			this.staggerDelay = staggerDelay;
+			return this;
+		}
+
+		/**
+		 * Sets the easing curve that each pair follows over its own span. Default is {@link Easing#ACCELERATE_DECELERATE}. See {@link ZoomAnimation.Builder#interpolator(Interpolator)}
+		 * @param interpolator The easing curve
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder interpolator(Interpolator interpolator) {
+			this.interpolator = interpolator;
+			return this;
+		}
+
+		/**
+		 * Whether the views should be put on a hardware layer while they fade. Each pair is only on its layers for its own span, and they are rendered
+		 * on the pair's first frame rather than all when the run starts. See {@link CrossfadeAnimation.Builder#hardwareLayer(boolean)}
+		 * @param hardwareLayer {@code true} to fade on hardware layers
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder hardwareLayer(boolean hardwareLayer) {
+			this.hardwareLayer = hardwareLayer;
+			return this;
+		}
+
+		/**
+		 * Decides whether to run the crossfades at all, and when to finish a run that drops frames right away. A crossfade has no cheaper variant, so
+		 * {@link AnimationPolicy#REDUCED} runs it as usual. Default is {@link AnimationPolicy#DEFAULT}.
+		 * @param policy The policy
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder policy(AnimationPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * Register a listener that receives frame timing statistics after every run. Optional; without a listener nothing is measured.
+		 * @param metricsListener The listener, or {@code null} to measure nothing
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder metricsListener(AnimationMetricsListener metricsListener) {
+			this.metricsListener = metricsListener;
+			return this;
+		}
+
+		/**
+		 * Build the {@code MultiCrossfadeAnimation} object
+		 * @return The {@code MultiCrossfadeAnimation} object
+		 */
+		public MultiCrossfadeAnimation build() {
+			return new MultiCrossfadeAnimation(this);
+		}
+	}
+
+	private final AnimationBackend.Driver.Callback mDriverCallback = new AnimationBackend.Driver.Callback() {
+		@Override
+		public void onFrame(float fraction) {
+			if (mDriver.isRunning() && mPolicy.shouldDowngrade(mDriver.getDroppedFrames())) {
+				// Finish now rather than keep dropping frames
+				mDriver.end();
+				return;
+			}
+			applyFraction(fraction);
+		}
+
+		@Override
+		public void onEnd(boolean cancelled) {
+			Tracing.begin(cancelled ? Tracing.CROSSFADE_CANCEL : Tracing.CROSSFADE_END);
+			try {
+				if (!cancelled) {
+					applyFraction(1f);
+					for (int i = 0; i < mOutViews.length; i++) {
+						mOutViews[i].setVisibility(View.GONE);
+					}
+				}
+				restoreHardwareLayers();
+				if (mMetricsRecorder != null) {
+					mMetricsRecorder.end(cancelled);
+				}
+			} finally {
+				Tracing.end();
+			}
+		}
+	};
+
+	/**
+	 * Run the crossfade animation. A crossfade that is still running is cancelled first.
+	 */
+	public void animate() {
+		Tracing.begin(Tracing.CROSSFADE_ANIMATE);
+		try {
+			final long initStart = mMetricsRecorder == null ? 0 : System.nanoTime();
+			cancel();
+			final boolean skip = mPolicy.decideFor(mContainer) == AnimationPolicy.SKIP;
+			final int count = mInViews.length;
+			for (int i = 0; i < count; i++) {
+				BACKEND.setAlpha(mInViews[i], 0f);
+				BACKEND.setAlpha(mOutViews[i], 1f);
+				mInViews[i].setVisibility(View.VISIBLE);
+				mLastFractions[i] = 0f;
+			}
+			mLayersInRun = mHardwareLayer && !skip;
+			if (mMetricsRecorder != null) {
+				mMetricsRecorder.begin(AnimationMetrics.TYPE_CROSSFADE, mDriver.getDuration(), System.nanoTime() - initStart);
+			}
+			mDriver.start();
+			if (skip) {
+				mDriver.end();
+			}
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	/**
+	 * @return The view requests for this crossfade are coalesced on, see {@link AnimationRequestQueue}. The parent of the first in-view when the crossfade was built.
+	 */
+	View getContainer() {
+		return mContainer;
+	}
+
+	/**
+	 * Cancel the crossfade if it is running. The views are left where they are.
+	 */
+	public void cancel() {
+		mDriver.cancel();
+	}
+
+	private void applyFraction(float fraction) {
+		for (int i = 0; i < mInViews.length; i++) {
+			float local = mSpanFraction == 0f ? 1f : (fraction - mStartFractions[i]) / mSpanFraction;
+			if (local < 0f) {
+				local = 0f;
+			} else if (local > 1f) {
+				local = 1f;
+			}
+			// Pairs that have not started yet or are already done need no
+			// writes, which keeps the per-frame cost proportional to the pairs
+			// actually in flight.
+			if (local == mLastFractions[i]) {
+				continue;
+			}
+			if (mLayersInRun && mLastFractions[i] == 0f && local < 1f) {
+				enableHardwareLayers(i);
+			}
+			mLastFractions[i] = local;
+			final float alpha = mPairInterpolator.getInterpolation(local);
+			BACKEND.setAlpha(mInViews[i], alpha);
+			BACKEND.setAlpha(mOutViews[i], 1f - alpha);
+			if (local == 1f) {
+				restoreHardwareLayers(i);
+			}
+		}
+	}
+
+	/**
+	 * Put a pair on hardware layers for its own span only, so that a staggered run holds layers for the pairs in flight rather than for all of them.
+	 * The layers are rendered on the pair's next draw rather than all up front.
+	 */
+	private void enableHardwareLayers(int pair) {
+		mPreviousLayerTypes[2 * pair] = HardwareLayers.enable(mInViews[pair], false);
+		mPreviousLayerTypes[2 * pair + 1] = HardwareLayers.enable(mOutViews[pair], false);
+	}
+
+	private void restoreHardwareLayers(int pair) {
+		HardwareLayers.restore(mInViews[pair], mPreviousLayerTypes[2 * pair]);
+		HardwareLayers.restore(mOutViews[pair], mPreviousLayerTypes[2 * pair + 1]);
+		mPreviousLayerTypes[2 * pair] = HardwareLayers.NOT_SET;
+		mPreviousLayerTypes[2 * pair + 1] = HardwareLayers.NOT_SET;
+	}
+
+	/**
+	 * Restore the pairs still in flight, for a run that was cancelled or ended early
+	 */
+	private void restoreHardwareLayers() {
+		if (!mLayersInRun) {
+			return;
+		}
+		mLayersInRun = false;
+		for (int i = 0; i < mInViews.length; i++) {
+			restoreHardwareLayers(i);
+		}
+	}
+}
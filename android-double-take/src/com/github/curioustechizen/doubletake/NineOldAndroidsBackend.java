@@ -0,0 +1,55 @@
+package com.github.curioustechizen.doubletake;
+
+import android.view.View;
+
+import com.nineoldandroids.view.ViewHelper;
+
+/**
+ * {@link AnimationBackend} on top of nineoldandroids, for platforms below API 11 where the framework view properties do not exist.
+ */
+final class NineOldAndroidsBackend extends AnimationBackend {
+
+	@Override
+	void setTransform(View view, float x, float y, float scaleX, float scaleY) {
+		ViewHelper.setX(view, x);
+		ViewHelper.setY(view, y);
+		ViewHelper.setScaleX(view, scaleX);
+		ViewHelper.setScaleY(view, scaleY);
+	}
+
+	@Override
+	float getX(View view) {
+		return ViewHelper.getX(view);
+	}
+
+	@Override
+	float getY(View view) {
+		return ViewHelper.getY(view);
+	}
+
+	@Override
+	float getScaleX(View view) {
+		return ViewHelper.getScaleX(view);
+	}
+
+	@Override
+	float getScaleY(View view) {
+		return ViewHelper.getScaleY(view);
+	}
+
+	@Override
+	void setPivot(View view, float pivotX, float pivotY) {
+		ViewHelper.setPivotX(view, pivotX);
+		ViewHelper.setPivotY(view, pivotY);
+	}
+
+	@Override
+	void setAlpha(View view, float alpha) {
+		ViewHelper.setAlpha(view, alpha);
+	}
+
+	@Override
+	float getAlpha(View view) {
+		return ViewHelper.getAlpha(view);
+	}
+}
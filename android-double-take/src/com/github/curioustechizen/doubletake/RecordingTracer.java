@@ -0,0 +1,150 @@
+package com.github.curioustechizen.doubletake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Tracer} that keeps every section in memory, for tests. It uses no Android classes, so it also runs on the JVM.
+ * <p>
+ * Sections are recorded in the order they begin, together with the section they are nested in. For example, after one zoom-in that computed its geometry:
+ * <pre>
+ * assertEquals(1, tracer.getCount(Tracing.ZOOM_IN));
+ * assertEquals(1, tracer.getCount(Tracing.ZOOM_INIT, Tracing.ZOOM_IN));
+ * assertEquals(0, tracer.getOpenCount());
+ * </pre>
+ * Not thread-safe. Use it on the main thread only, like the animations.
+ */
+public class RecordingTracer implements Tracer {
+
+	/**
+	 * A recorded section
+	 */
+	public static final class Section {
+
+		private final String mName;
+		private final String mParent;
+		private final int mDepth;
+		private boolean mEnded;
+
+		Section(String name, String parent, int depth) {
+			this.mName = name;
+			this.mParent = parent;
+			this.mDepth = depth;
+		}
+
+		/**
+		 * @return The name the section was begun with
+		 */
+		public String getName() {
+			return mName;
+		}
+
+		/**
+		 * @return The name of the section this one is nested in, or {@code null} if it is not nested
+		 */
+		public String getParent() {
+			return mParent;
+		}
+
+		/**
+		 * @return The number of sections this one is nested in
+		 */
+		public int getDepth() {
+			return mDepth;
+		}
+
+		/**
+		 * @return Whether the section has ended
+		 */
+		public boolean isEnded() {
+			return mEnded;
+		}
+
+		@Override
+		public String toString() {
+			return mName + "@" + mDepth;
+		}
+	}
+
+	private final List<Section> mSections = new ArrayList<Section>();
+	private final List<Section> mOpen = new ArrayList<Section>();
+	private int mMaxDepth;
+
+	@Override
+	public void beginSection(String name) {
+		final int depth = mOpen.size();
+		final Section section = new Section(name, depth == 0 ? null : mOpen.get(depth - 1).getName(), depth);
+		mSections.add(section);
+		mOpen.add(section);
+		mMaxDepth = Math.max(mMaxDepth, depth + 1);
+	}
+
+	/**
+	 * @throws IllegalStateException If no section is open
+	 */
+	@Override
+	public void endSection() {
+		if (mOpen.isEmpty()) {
+			throw new IllegalStateException("endSection() without a matching beginSection()");
+		}
+		mOpen.remove(mOpen.size() - 1).mEnded = true;
+	}
+
+	/**
+	 * @return All sections recorded so far, in the order they began
+	 */
+	public List<Section> getSections() {
+		return Collections.unmodifiableList(mSections);
+	}
+
+	/**
+	 * @return The number of sections of the given name recorded so far
+	 */
+	public int getCount(String name) {
+		int count = 0;
+		for (int i = 0, size = mSections.size(); i < size; i++) {
+			if (mSections.get(i).getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of sections of the given name recorded so far directly inside a section of the given parent name
+	 */
+	public int getCount(String name, String parent) {
+		int count = 0;
+		for (int i = 0, size = mSections.size(); i < size; i++) {
+			final Section section = mSections.get(i);
+			if (section.getName().equals(name) && parent.equals(section.getParent())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of sections that have begun but not yet ended. 0 when every section has been closed.
+	 */
+	public int getOpenCount() {
+		return mOpen.size();
+	}
+
+	/**
+	 * @return The deepest nesting seen so far: 1 if sections were recorded but never nested
+	 */
+	public int getMaxDepth() {
+		return mMaxDepth;
+	}
+
+	/**
+	 * Forget all sections recorded so far, including the open ones
+	 */
+	public void clear() {
+		mSections.clear();
+		mOpen.clear();
+		mMaxDepth = 0;
+	}
+}
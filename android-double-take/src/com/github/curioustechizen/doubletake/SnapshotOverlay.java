@@ -0,0 +1,108 @@
+package com.github.curioustechizen.doubletake;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Manages the {@link SnapshotView} that stands in for a zoomed view inside its container while it animates.
+ * <p>
+ * There is one per container, shared by all the zooms into it, see {@link #forContainer(ViewGroup)}. The snapshot view is added to the container, on top of
+ * its other children, the first time it is needed and stays there, drawing nothing, between animations. It shows one snapshot at a time: a zoom that starts
+ * while another one's snapshot is showing animates its live view instead.
+ */
+final class SnapshotOverlay {
+
+	private final ViewGroup mContainer;
+	private final Canvas mCanvas = new Canvas();
+	private SnapshotView mSnapshotView;
+	// The animation whose snapshot is showing, if any
+	private Object mOwner;
+
+	private SnapshotOverlay(ViewGroup container) {
+		this.mContainer = container;
+	}
+
+	/**
+	 * @return The overlay of the container, created on the first call
+	 */
+	static SnapshotOverlay forContainer(ViewGroup container) {
+		SnapshotOverlay overlay = (SnapshotOverlay) container.getTag(R.id.doubletake_snapshot_overlay);
+		if (overlay == null) {
+			overlay = new SnapshotOverlay(container);
+			container.setTag(R.id.doubletake_snapshot_overlay, overlay);
+			SnapshotPool.registerTrimCallbacks(container.getContext());
+		}
+		return overlay;
+	}
+
+	/**
+	 * Add the snapshot view to the container if that has not happened yet. Causes a layout pass the first time.
+	 */
+	void attach() {
+		if (mSnapshotView == null) {
+			mSnapshotView = new SnapshotView(mContainer.getContext());
+			mContainer.addView(mSnapshotView, new ViewGroup.LayoutParams(
+					ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		}
+	}
+
+	/**
+	 * @return Whether the snapshot view is in place and laid out, so that {@link #show(View)} can be called
+	 */
+	boolean isReady() {
+		return mSnapshotView != null && !mSnapshotView.isLayoutRequested();
+	}
+
+	/**
+	 * Render the target into a pooled bitmap once and show that instead. The target itself is not hidden by this call.
+	 * @param owner The animation showing the snapshot, until it calls {@link #hide(Object)}
+	 * @param target The view to stand in for. Must be laid out.
+	 * @return {@code false} if the target has no size, the snapshot view is not attached, or another animation's snapshot is showing. Nothing is shown in that case.
+	 */
+	boolean show(Object owner, View target) {
+		final int width = target.getWidth();
+		final int height = target.getHeight();
+		if (mSnapshotView == null || width == 0 || height == 0 || (mOwner != null && mOwner != owner)) {
+			return false;
+		}
+		hide(owner);
+		final Bitmap bitmap = SnapshotPool.acquire(width, height);
+		mCanvas.setBitmap(bitmap);
+		// draw() renders the content only; the target's own transforms are
+		// applied by setTransform() instead.
+		mCanvas.translate(-target.getScrollX(), -target.getScrollY());
+		target.draw(mCanvas);
+		mCanvas.translate(target.getScrollX(), target.getScrollY());
+		mSnapshotView.setSnapshot(bitmap);
+		mOwner = owner;
+		return true;
+	}
+
+	/**
+	 * @see SnapshotView#setTransform(float, float, float, float)
+	 */
+	void setTransform(float x, float y, float scaleX, float scaleY) {
+		mSnapshotView.setTransform(x, y, scaleX, scaleY);
+	}
+
+	void setAlpha(float alpha) {
+		AnimationBackend.INSTANCE.setAlpha(mSnapshotView, alpha);
+	}
+
+	/**
+	 * Stop showing the owner's snapshot, if it is showing, and give its bitmap back to the pool
+	 */
+	void hide(Object owner) {
+		if (mOwner != owner) {
+			return;
+		}
+		mOwner = null;
+		final Bitmap bitmap = mSnapshotView.getSnapshot();
+		if (bitmap != null) {
+			mSnapshotView.setSnapshot(null);
+			SnapshotPool.release(bitmap);
+		}
+	}
+}
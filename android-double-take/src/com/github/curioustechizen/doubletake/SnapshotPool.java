@@ -0,0 +1,105 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * A small pool of snapshot bitmaps shared by all zoom animations, so that a snapshot zoom does not allocate a screen-sized bitmap on every run.
+ * <p>
+ * Bitmaps are matched on exact size. The pool is emptied when the system asks the app to trim its memory (from API 14, see {@link #registerTrimCallbacks(Context)}),
+ * and when a zoom animation is released. Only used on the main thread.
+ */
+final class SnapshotPool {
+
+	private static final int MAX_POOLED = 2;
+
+	private static final Bitmap[] POOL = new Bitmap[MAX_POOLED];
+
+	private static boolean sTrimCallbacksRegistered;
+
+	private SnapshotPool() {
+	}
+
+	/**
+	 * @return A cleared bitmap of the given size, from the pool if possible
+	 */
+	static Bitmap acquire(int width, int height) {
+		for (int i = 0; i < MAX_POOLED; i++) {
+			final Bitmap bitmap = POOL[i];
+			if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+				POOL[i] = null;
+				bitmap.eraseColor(0);
+				return bitmap;
+			}
+		}
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	/**
+	 * Return a bitmap obtained from {@link #acquire(int, int)}. It must no longer be drawn anywhere.
+	 */
+	static void release(Bitmap bitmap) {
+		for (int i = 0; i < MAX_POOLED; i++) {
+			if (POOL[i] == null) {
+				POOL[i] = bitmap;
+				return;
+			}
+		}
+		// Full: the oldest size is the least likely to be needed again
+		POOL[0].recycle();
+		System.arraycopy(POOL, 1, POOL, 0, MAX_POOLED - 1);
+		POOL[MAX_POOLED - 1] = bitmap;
+	}
+
+	/**
+	 * Recycle the pooled bitmaps
+	 */
+	static void trim() {
+		for (int i = 0; i < MAX_POOLED; i++) {
+			if (POOL[i] != null) {
+				POOL[i].recycle();
+				POOL[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Empty the pool whenever the system runs low on memory or the app's UI is hidden. Registered on the application context once; later calls do nothing.
+	 */
+	static void registerTrimCallbacks(Context context) {
+		if (sTrimCallbacksRegistered || Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			return;
+		}
+		TrimCallbacks.register(context);
+		sTrimCallbacksRegistered = true;
+	}
+
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	private static final class TrimCallbacks implements ComponentCallbacks2 {
+
+		static void register(Context context) {
+			context.getApplicationContext().registerComponentCallbacks(new TrimCallbacks());
+		}
+
+		@Override
+		public void onTrimMemory(int level) {
+			// Includes the levels of a hidden or background app
+			if (level >= TRIM_MEMORY_RUNNING_LOW) {
+				trim();
+			}
+		}
+
+		@Override
+		public void onLowMemory() {
+			trim();
+		}
+
+		@Override
+		public void onConfigurationChanged(Configuration newConfig) {
+		}
+	}
+}
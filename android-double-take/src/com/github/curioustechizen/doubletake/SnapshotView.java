@@ -0,0 +1,53 @@
+package com.github.curioustechizen.doubletake;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.view.View;
+
+/**
+ * A lightweight stand-in for a view being zoomed: it draws a bitmap snapshot of that view through a single matrix. 
+ * Animating it costs one bitmap draw per frame no matter how deep the hierarchy of the original view is.
+ */
+final class SnapshotView extends View {
+
+	private final Matrix mMatrix = new Matrix();
+	private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private Bitmap mSnapshot;
+
+	SnapshotView(Context context) {
+		super(context);
+		setWillNotDraw(false);
+	}
+
+	/**
+	 * Set the bitmap to draw, or {@code null} to draw nothing
+	 */
+	void setSnapshot(Bitmap snapshot) {
+		mSnapshot = snapshot;
+		invalidate();
+	}
+
+	Bitmap getSnapshot() {
+		return mSnapshot;
+	}
+
+	/**
+	 * Position the snapshot as the original view would be with the given x, y, scaleX and scaleY, pivoting around its top-left corner.
+	 * The coordinates are those of the parent.
+	 */
+	void setTransform(float x, float y, float scaleX, float scaleY) {
+		mMatrix.setScale(scaleX, scaleY);
+		mMatrix.postTranslate(x - getLeft(), y - getTop());
+		invalidate();
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		if (mSnapshot != null) {
+			canvas.drawBitmap(mSnapshot, mMatrix, mPaint);
+		}
+	}
+}
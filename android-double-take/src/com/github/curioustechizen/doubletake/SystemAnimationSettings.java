@@ -0,0 +1,154 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.hardware.display.DisplayManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.view.Display;
+import android.view.WindowManager;
+
+/**
+ * The system settings that animations follow: the animator duration scale from the developer options, power-save mode, and the refresh interval of the display
+ * that dropped frames are counted against.
+ * <p>
+ * None is cheap to read: the duration scale is a settings lookup, and power-save mode and the refresh rate binder calls into the system. So all are read once,
+ * on the first {@link #init(Context)}, and then kept up to date by a {@code ContentObserver} on the setting, a receiver of {@code ACTION_POWER_SAVE_MODE_CHANGED},
+ * and from API 17 a {@code DisplayListener}, since some displays switch between refresh rates. These are registered on the application context and stay
+ * registered for the life of the process.
+ * <p>
+ * Only used on the main thread.
+ */
+final class SystemAnimationSettings {
+
+	// A 60 Hz display, assumed when the display reports no usable rate
+	private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+	// The application context, once initialized
+	private static Context sContext;
+	private static float sDurationScale = 1f;
+	private static boolean sPowerSaveMode;
+	private static long sFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+	private SystemAnimationSettings() {
+	}
+
+	/**
+	 * Read the settings and start following their changes, unless that has been done already. Only a {@code null} check after the first call.
+	 */
+	static void init(Context context) {
+		if (sContext != null) {
+			return;
+		}
+		sContext = context.getApplicationContext();
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			final ContentObserver durationScaleObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+				@Override
+				public void onChange(boolean selfChange) {
+					sDurationScale = readDurationScale(sContext.getContentResolver());
+				}
+			};
+			sContext.getContentResolver().registerContentObserver(durationScaleUri(), false, durationScaleObserver);
+			sDurationScale = readDurationScale(sContext.getContentResolver());
+		}
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			final BroadcastReceiver powerSaveModeReceiver = new BroadcastReceiver() {
+				@Override
+				public void onReceive(Context context, Intent intent) {
+					sPowerSaveMode = readPowerSaveMode(sContext);
+				}
+			};
+			sContext.registerReceiver(powerSaveModeReceiver, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+			sPowerSaveMode = readPowerSaveMode(sContext);
+		}
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			registerDisplayListener(sContext);
+		}
+		sFrameIntervalNanos = readFrameIntervalNanos(sContext);
+	}
+
+	/**
+	 * @return The animator duration scale from the developer options. 1 where the platform has no such setting, or before {@link #init(Context)}.
+	 */
+	static float getDurationScale() {
+		return sDurationScale;
+	}
+
+	/**
+	 * @return Whether the device is in power-save mode. {@code false} before API 21, or before {@link #init(Context)}.
+	 */
+	static boolean isPowerSaveMode() {
+		return sPowerSaveMode;
+	}
+
+	/**
+	 * @return The refresh interval of the default display. That of a 60 Hz display before {@link #init(Context)}, or if the display reports no usable rate.
+	 */
+	static long getFrameIntervalNanos() {
+		return sFrameIntervalNanos;
+	}
+
+	@SuppressWarnings("deprecation")
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+	private static Uri durationScaleUri() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE);
+		}
+		return Settings.System.getUriFor(Settings.System.ANIMATOR_DURATION_SCALE);
+	}
+
+	@SuppressWarnings("deprecation")
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+	private static float readDurationScale(ContentResolver resolver) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+		}
+		return Settings.System.getFloat(resolver, Settings.System.ANIMATOR_DURATION_SCALE, 1f);
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static boolean readPowerSaveMode(Context context) {
+		final PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+		return powerManager != null && powerManager.isPowerSaveMode();
+	}
+
+	private static long readFrameIntervalNanos(Context context) {
+		final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+		final Display display = windowManager == null ? null : windowManager.getDefaultDisplay();
+		final float refreshRate = display == null ? 0f : display.getRefreshRate();
+		return refreshRate >= 10f ? (long) (1000000000L / refreshRate) : DEFAULT_FRAME_INTERVAL_NANOS;
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+	private static void registerDisplayListener(Context context) {
+		final DisplayManager displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+		if (displayManager == null) {
+			return;
+		}
+		displayManager.registerDisplayListener(new DisplayManager.DisplayListener() {
+			@Override
+			public void onDisplayChanged(int displayId) {
+				if (displayId == Display.DEFAULT_DISPLAY) {
+					sFrameIntervalNanos = readFrameIntervalNanos(sContext);
+				}
+			}
+
+			@Override
+			public void onDisplayAdded(int displayId) {
+			}
+
+			@Override
+			public void onDisplayRemoved(int displayId) {
+			}
+		}, new Handler(Looper.getMainLooper()));
+	}
+}
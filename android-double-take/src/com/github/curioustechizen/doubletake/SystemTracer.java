@@ -0,0 +1,22 @@
+package com.github.curioustechizen.doubletake;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Writes trace sections to the platform trace, where systrace and Perfetto show them on the main thread's timeline. Requires API 18, see {@link Tracing#platform()}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+final class SystemTracer implements Tracer {
+
+	@Override
+	public void beginSection(String name) {
+		Trace.beginSection(name);
+	}
+
+	@Override
+	public void endSection() {
+		Trace.endSection();
+	}
+}
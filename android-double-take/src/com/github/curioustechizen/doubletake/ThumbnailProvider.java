@@ -0,0 +1,288 @@
+package com.github.curioustechizen.doubletake;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnPreDrawListener;
+import android.widget.ImageView;
+
+/**
+ * Shows a thumbnail generated from a full image in an {@link ImageView}, so that an app ships one image per item instead of a full image and a thumbnail.
+ * <p>
+ * The thumbnail is made at the measured size of the view, large enough to fill it with {@code centerCrop}. It is generated off the main thread,
+ * kept in the same in-memory cache as the full images, and written to an on-disk cache in the app's cache directory. On later launches the disk copy
+ * is memory-mapped and its pixels copied straight into a bitmap, which is much cheaper than decoding and scaling the full image again.
+ * <p>
+ * The disk cache is tied to the installed APK: it is discarded whenever the app is updated, since resource ids may then refer to other images.
+ * Both caches keep the thumbnails of each resource configuration apart, so a change of density, night mode or locale never shows the thumbnail of another variant.
+ * <p>
+ * {@link ZoomAnimation.Builder#generateThumbnail(boolean)} uses this for the zoomed-out view of a zoom into a full image resource.
+ */
+public final class ThumbnailProvider {
+
+	private static final String CACHE_DIR = "doubletake-thumbnails";
+	// "DTTH", followed by the width and the height
+	private static final int MAGIC = 0x44545448;
+	private static final int HEADER_SIZE = 12;
+	private static final int BYTES_PER_PIXEL = 4;
+
+	// The directory of the current APK's thumbnails. Only used on the
+	// decoder thread.
+	private static File sCacheDir;
+
+	private ThumbnailProvider() {
+	}
+
+	/**
+	 * Show a thumbnail of the drawable resource in the view. If the view has not been measured yet, this happens once it has been.
+	 * The view keeps its current drawable until the thumbnail is ready, immediately if it is in the memory cache. Must be called on the main thread.
+	 * @param view The view to show the thumbnail in
+	 * @param resId The drawable resource of the full image
+	 */
+	public static void loadInto(ImageView view, int resId) {
+		if (!load(view, resId)) {
+			view.getViewTreeObserver().addOnPreDrawListener(new MeasuredListener(view, resId));
+		}
+	}
+
+	/**
+	 * Delete the thumbnails of all APK versions from the disk cache. Does disk I/O; call it off the main thread.
+	 */
+	public static void clearDiskCache(Context context) {
+		deleteRecursively(new File(context.getCacheDir(), CACHE_DIR));
+	}
+
+	/**
+	 * Waits for the view to be measured. Refers to the view weakly, so a view that never gets measured is not kept alive.
+	 */
+	private static final class MeasuredListener implements OnPreDrawListener {
+
+		private final WeakReference<ImageView> mView;
+		private final int mResId;
+
+		MeasuredListener(ImageView view, int resId) {
+			this.mView = new WeakReference<ImageView>(view);
+			this.mResId = resId;
+		}
+
+		@Override
+		public boolean onPreDraw() {
+			final ImageView view = mView.get();
+			if (view != null && load(view, mResId)) {
+				final ViewTreeObserver observer = view.getViewTreeObserver();
+				if (observer.isAlive()) {
+					observer.removeOnPreDrawListener(this);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @return {@code false} if the view has not been measured yet, and nothing was done
+	 */
+	private static boolean load(ImageView view, final int resId) {
+		final int width = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+		final int height = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+		if (width <= 0 || height <= 0) {
+			return false;
+		}
+		final String configurationKey = BitmapLoader.configurationKey(view.getResources());
+		final String key = "thumb:" + resId + "@" + width + "x" + height + "/" + configurationKey;
+		final Bitmap cached = BitmapLoader.getCached(key);
+		if (cached != null) {
+			view.setTag(R.id.doubletake_image_key, null);
+			view.setImageBitmap(cached);
+			return true;
+		}
+		view.setTag(R.id.doubletake_image_key, key);
+		final Context context = view.getContext().getApplicationContext();
+		final Resources res = view.getResources();
+		// Thumbnails never hold up the decode of a full image
+		BitmapLoader.executeLowPriority(key, new ThumbnailCallback(view), new BitmapLoader.Decoder() {
+			@Override
+			public Bitmap decode() {
+				return loadThumbnail(context, res, resId, width, height, configurationKey);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Sets the thumbnail, unless the view has been given another one in the meantime
+	 */
+	private static final class ThumbnailCallback implements BitmapLoader.Callback {
+
+		private final WeakReference<ImageView> mView;
+
+		ThumbnailCallback(ImageView view) {
+			this.mView = new WeakReference<ImageView>(view);
+		}
+
+		@Override
+		public void onBitmapLoaded(String key, Bitmap bitmap) {
+			final ImageView view = mView.get();
+			if (view != null && bitmap != null && key.equals(view.getTag(R.id.doubletake_image_key))) {
+				view.setTag(R.id.doubletake_image_key, null);
+				view.setImageBitmap(bitmap);
+			}
+		}
+	}
+
+	/**
+	 * Read the thumbnail from the disk cache, or generate it and write it there. Runs on the decoder thread.
+	 */
+	private static Bitmap loadThumbnail(Context context, Resources res, int resId, int width, int height, String configurationKey) {
+		// A resource can have a variant per density, night mode and other
+		// qualifiers, so each configuration has thumbnails of its own
+		final File file = new File(cacheDir(context), resId + "_" + width + "x" + height + "_" + configurationKey);
+		Bitmap thumbnail = read(file);
+		if (thumbnail != null) {
+			return thumbnail;
+		}
+		thumbnail = generate(res, resId, width, height);
+		if (thumbnail != null) {
+			write(thumbnail, file);
+		}
+		return thumbnail;
+	}
+
+	private static Bitmap generate(Resources res, int resId, int width, int height) {
+		final Bitmap decoded = BitmapLoader.decodeResource(res, resId, width, height);
+		if (decoded == null) {
+			return null;
+		}
+		// The smallest size that still covers the view, like centerCrop. An
+		// image smaller than that is kept as it is.
+		final float scale = Math.min(1f,
+				Math.max((float) width / decoded.getWidth(), (float) height / decoded.getHeight()));
+		final int scaledWidth = Math.max(1, Math.round(decoded.getWidth() * scale));
+		final int scaledHeight = Math.max(1, Math.round(decoded.getHeight() * scale));
+		if (scaledWidth == decoded.getWidth() && scaledHeight == decoded.getHeight()) {
+			return decoded;
+		}
+		final Bitmap scaled = Bitmap.createScaledBitmap(decoded, scaledWidth, scaledHeight, true);
+		if (scaled != decoded) {
+			decoded.recycle();
+		}
+		return scaled;
+	}
+
+	/**
+	 * @return The thumbnail mapped from the file, or {@code null} if there is none or it cannot be read
+	 */
+	private static Bitmap read(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(file, "r");
+			final FileChannel channel = in.getChannel();
+			final long size = channel.size();
+			if (size >= HEADER_SIZE) {
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				final int magic = buffer.getInt();
+				final int width = buffer.getInt();
+				final int height = buffer.getInt();
+				if (magic == MAGIC && width > 0 && height > 0
+						&& size == HEADER_SIZE + (long) width * height * BYTES_PER_PIXEL) {
+					final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+					// Copies from the current position, right after the header
+					bitmap.copyPixelsFromBuffer(buffer);
+					return bitmap;
+				}
+			}
+		} catch (IOException e) {
+			// Treated like a corrupt file below
+		} catch (RuntimeException e) {
+			// Thrown by copyPixelsFromBuffer() for a truncated file
+		} finally {
+			closeQuietly(in);
+		}
+		file.delete();
+		return null;
+	}
+
+	/**
+	 * Write the pixels through a mapping of the file. A temporary file is renamed into place, so that a reader never sees half a thumbnail.
+	 */
+	private static void write(Bitmap bitmap, File file) {
+		final int width = bitmap.getWidth();
+		final int height = bitmap.getHeight();
+		if (bitmap.getConfig() != Bitmap.Config.ARGB_8888 || bitmap.getRowBytes() != width * BYTES_PER_PIXEL) {
+			return;
+		}
+		final File temp = new File(file.getPath() + ".tmp");
+		RandomAccessFile out = null;
+		boolean written = false;
+		try {
+			file.getParentFile().mkdirs();
+			out = new RandomAccessFile(temp, "rw");
+			final long size = HEADER_SIZE + (long) width * height * BYTES_PER_PIXEL;
+			out.setLength(size);
+			final MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(width);
+			buffer.putInt(height);
+			bitmap.copyPixelsToBuffer(buffer);
+			buffer.force();
+			written = true;
+		} catch (IOException e) {
+			// Generated again next time
+		} finally {
+			closeQuietly(out);
+		}
+		if (!written || !temp.renameTo(file)) {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * The cache directory of the installed APK. Directories of earlier APKs are deleted the first time. Only called on the decoder thread.
+	 */
+	private static File cacheDir(Context context) {
+		if (sCacheDir == null) {
+			final File root = new File(context.getCacheDir(), CACHE_DIR);
+			final String apkStamp = Long.toHexString(new File(context.getApplicationInfo().sourceDir).lastModified());
+			final File[] dirs = root.listFiles();
+			if (dirs != null) {
+				for (File dir : dirs) {
+					if (!dir.getName().equals(apkStamp)) {
+						deleteRecursively(dir);
+					}
+				}
+			}
+			sCacheDir = new File(root, apkStamp);
+		}
+		return sCacheDir;
+	}
+
+	private static void deleteRecursively(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static void closeQuietly(RandomAccessFile file) {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// Nothing left to do
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.github.curioustechizen.doubletake;
+
+/**
+ * Receives the trace sections that double-take marks around its hot paths: computing the zoom geometry, starting a zoom or a crossfade,
+ * and ending or cancelling one. Install a tracer with {@link Tracing#setTracer(Tracer)}.
+ * <p>
+ * Sections nest. Every {@link #beginSection(String)} is followed by exactly one {@link #endSection()} on the same thread, and inner sections end before outer ones.
+ * Both methods are called on the main thread, in the middle of animation work, so they should be cheap.
+ */
+public interface Tracer {
+
+	/**
+	 * @param name The name of the section, one of the constants of {@link Tracing}
+	 */
+	void beginSection(String name);
+
+	/**
+	 * End the section begun last
+	 */
+	void endSection();
+}
@@ -0,0 +1,120 @@
+package com.github.curioustechizen.doubletake;
+
+import android.os.Build;
+
+/**
+ * Holds the {@link Tracer} that all double-take animations report to, and the names of the sections they report.
+ * <p>
+ * Nothing is traced by default. To see the sections in systrace or Perfetto next to the framework's own, install the {@link #platform()} tracer,
+ * typically from {@code Application.onCreate()} in debug builds:
+ * <pre>
+ * Tracing.setTracer(Tracing.platform());
+ * </pre>
+ * In tests, a {@link RecordingTracer} keeps the sections in memory instead.
+ */
+public final class Tracing {
+
+	/**
+	 * {@code ZoomAnimation} computes the bounds of the zoom, or finds them cached
+	 */
+	public static final String ZOOM_INIT = "doubletake:ZoomAnimation.init";
+
+	/**
+	 * {@code ZoomAnimation.zoomIn()}
+	 */
+	public static final String ZOOM_IN = "doubletake:ZoomAnimation.zoomIn";
+
+	/**
+	 * {@code ZoomAnimation.zoomOut()}
+	 */
+	public static final String ZOOM_OUT = "doubletake:ZoomAnimation.zoomOut";
+
+	/**
+	 * A zoom that was waiting for layout starts, or jumps to its end state, in the pre-draw pass
+	 */
+	public static final String ZOOM_DEFERRED = "doubletake:ZoomAnimation.deferred";
+
+	/**
+	 * {@code ContainerZoomController.zoomIn()}, which may switch from one item to another
+	 */
+	public static final String ZOOM_SWITCH = "doubletake:ContainerZoomController.zoomIn";
+
+	/**
+	 * A zoom ends
+	 */
+	public static final String ZOOM_END = "doubletake:ZoomAnimation.end";
+
+	/**
+	 * A zoom is cancelled
+	 */
+	public static final String ZOOM_CANCEL = "doubletake:ZoomAnimation.cancel";
+
+	/**
+	 * {@code CrossfadeAnimation.animate()} or {@code MultiCrossfadeAnimation.animate()}
+	 */
+	public static final String CROSSFADE_ANIMATE = "doubletake:Crossfade.animate";
+
+	/**
+	 * A crossfade ends
+	 */
+	public static final String CROSSFADE_END = "doubletake:Crossfade.end";
+
+	/**
+	 * A crossfade is cancelled
+	 */
+	public static final String CROSSFADE_CANCEL = "doubletake:Crossfade.cancel";
+
+	/**
+	 * {@link AnimationRequestQueue} runs the requests coalesced for a frame
+	 */
+	public static final String REQUESTS = "doubletake:AnimationRequestQueue.run";
+
+	/**
+	 * A tracer that does nothing. The default.
+	 */
+	public static final Tracer NO_OP = new Tracer() {
+		@Override
+		public void beginSection(String name) {
+		}
+
+		@Override
+		public void endSection() {
+		}
+	};
+
+	private static Tracer sTracer = NO_OP;
+
+	private Tracing() {
+	}
+
+	/**
+	 * @return A tracer that writes the sections to the platform trace through {@code android.os.Trace} on API 18 and above, and {@link #NO_OP} below that
+	 */
+	public static Tracer platform() {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ? new SystemTracer() : NO_OP;
+	}
+
+	/**
+	 * Report the sections of all animations to the given tracer from now on. Call this on the main thread, and not while an animation is starting
+	 * or ending, so that no section ends on a different tracer than it began on.
+	 * @param tracer The tracer, or {@code null} to trace nothing
+	 */
+	public static void setTracer(Tracer tracer) {
+		sTracer = tracer == null ? NO_OP : tracer;
+	}
+
+	/**
+	 * @return The tracer the animations report to
+	 */
+	public static Tracer getTracer() {
+		return sTracer;
+	}
+
+	static void begin(String name) {
+		sTracer.beginSection(name);
+	}
+
+	static void end() {
+		sTracer.endSection();
+	}
+}
@@ -1,41 +1,152 @@
 package com.github.curioustechizen.doubletake;
 
-import com.nineoldandroids.animation.Animator;
-import com.nineoldandroids.animation.AnimatorListenerAdapter;
-import com.nineoldandroids.animation.AnimatorSet;
-import com.nineoldandroids.animation.ObjectAnimator;
-import com.nineoldandroids.view.ViewHelper;
+import java.lang.ref.WeakReference;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.app.Application.ActivityLifecycleCallbacks;
+import android.graphics.Bitmap;
 import android.graphics.Point;
+import android.graphics.drawable.Drawable;
 import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.View.OnTouchListener;
 import android.view.ViewGroup;
-import android.view.animation.DecelerateInterpolator;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnPreDrawListener;
+import android.view.animation.Interpolator;
+import android.widget.ImageView;
 
 /**
  * The class representing a zoom animation. There is a <em>Zoomed-out view</em> and a <em>Zoomed-in View</em>. There is also the container (layout) within which the zooming should occur. 
  * The animation consists of zooming in from the zoom-out view to the zoomed-in view such that the zoomed-in view takes up the specified container.
  * <p>
- * Obtain an instance of this class using its {@link Builder}
+ * Obtain an instance of this class using its {@link Builder}. An instance can be zoomed in and out any number of times: the animators are built once and re-targeted on every run, 
+ * so hold on to it rather than building a new one for every click.
+ * <p>
+ * The zoomed-in view can also be given as a {@link ViewStub} or a {@link ZoomedViewFactory}. It is then only created when it is first needed, 
+ * so that screens with many possible zoom targets do not inflate all of them up front.
+ * <p>
+ * Call {@link #release()} when the views go away, or bind the animation to its activity with {@link Builder#bindToActivity(Activity)}.
  * @author Kiran Rao
  *
  */
 public class ZoomAnimation {
 
-	private final View mZoomedOutView;
-	private final View mZoomedInView;
+	private static final AnimationBackend BACKEND = AnimationBackend.INSTANCE;
+
+	private View mZoomedOutView;
+	// Null until created by the factory, if one was given
+	private View mZoomedInView;
+	private final ZoomedViewFactory mZoomedInViewFactory;
 	private final ViewGroup mZoomedInContainer;
 	private final ViewGroup mZoomedOutContainer;
 	private final int mAnimationTime;
-	private Animator mCurrentAnimator;
+	private final boolean mHardwareLayer;
+	private final boolean mDeferUntilLaidOut;
+	private final int mScaleMode;
+	private final int mFullImageResId;
+	private final SnapshotOverlay mSnapshotOverlay;
+	private final boolean mClipReveal;
+	private boolean mSnapshotActive;
+	private final FrameMetricsRecorder mMetricsRecorder;
+	private long mInitTimeNanos;
+	private final AnimationPolicy mPolicy;
+	private final boolean mZoomOutOnClick;
+	// Whether the current run is the crossfade-only variant, see AnimationPolicy
+	private boolean mReduced;
+	private int mPreviousLayerType = HardwareLayers.NOT_SET;
+
+	// A single driver runs the progress from 0 to 1. It is created once and
+	// every run only re-targets the from/to values below, which the frame
+	// callback turns into all four transforms in one pass.
+	private final AnimationBackend.Driver mDriver;
+	private float mFromX, mToX;
+	private float mFromY, mToY;
+	private float mFromScaleX, mToScaleX;
+	private float mFromScaleY, mToScaleY;
+	private boolean mZoomingIn;
+	// Whether the last request was to zoom in, see saveInstanceState()
+	private boolean mZoomedIn;
 
 	private ZoomAnimation(Builder builder) {
-		this.mZoomedInView = builder.zoomedInView;
+		this.mZoomedInViewFactory = builder.zoomedInViewFactory;
 		this.mZoomedOutView = builder.zoomedOutView;
 		this.mZoomedInContainer = builder.zoomedInContainer;
 		this.mZoomedOutContainer = builder.zoomedOutContainer;
 		this.mAnimationTime = builder.animationTime;
+		this.mHardwareLayer = builder.hardwareLayer;
+		this.mDeferUntilLaidOut = builder.deferUntilLaidOut;
+		this.mScaleMode = builder.scaleMode;
+		this.mFullImageResId = builder.fullImageResId;
+		this.mClipReveal = builder.clipReveal && ClipBounds.SUPPORTED;
+		this.mSnapshotOverlay = builder.snapshot && !mClipReveal ? SnapshotOverlay.forContainer(builder.zoomedInContainer) : null;
+		this.mPolicy = builder.policy;
+		this.mZoomOutOnClick = builder.zoomOutOnClick;
+		this.mMetricsRecorder = builder.metricsListener == null ? null
+				: new FrameMetricsRecorder(builder.zoomedInContainer, builder.metricsListener);
+
+		mDriver = BACKEND.newDriver(builder.interpolator, mDriverCallback);
+		mDriver.setDuration(mAnimationTime);
+		if (builder.zoomedInView != null) {
+			setZoomedInView(builder.zoomedInView);
+		} else if (builder.prefetchOnTouch) {
+			mZoomedOutView.setOnTouchListener(mPrefetchTouchListener);
+			mPrefetchTouchView = mZoomedOutView;
+		}
+		if (builder.generateThumbnail) {
+			ThumbnailProvider.loadInto((ImageView) mZoomedOutView, mFullImageResId);
+		}
+		if (builder.activity != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			ActivityBinding.bind(builder.activity, this);
+		}
+	}
+
+	/**
+	 * Creates the zoomed-in view on demand
+	 */
+	public interface ZoomedViewFactory {
+
+		/**
+		 * Called on the main thread at most once per {@link ZoomAnimation}, on the first zoom-in or prefetch
+		 * @param zoomedInContainer The container that the zoomed-in view should occupy
+		 * @return The zoomed-in view. If it has no parent yet, it is added to the container, filling it.
+		 */
+		View createZoomedInView(ViewGroup zoomedInContainer);
+	}
+
+	/**
+	 * Inflates a {@link ViewStub}. A stub can be shared between animations if it has an {@code android:inflatedId}: 
+	 * the animations after the first one look the inflated view up by that id.
+	 */
+	private static final class ViewStubFactory implements ZoomedViewFactory {
+
+		private final ViewStub mStub;
+
+		ViewStubFactory(ViewStub stub) {
+			this.mStub = stub;
+		}
+
+		@Override
+		public View createZoomedInView(ViewGroup zoomedInContainer) {
+			if (mStub.getParent() != null) {
+				return mStub.inflate();
+			}
+			final View inflated = mStub.getInflatedId() == View.NO_ID ? null
+					: zoomedInContainer.getRootView().findViewById(mStub.getInflatedId());
+			if (inflated == null) {
+				throw new IllegalStateException("The ViewStub has already been inflated. Give it an android:inflatedId to share it between animations");
+			}
+			return inflated;
+		}
 	}
 
 	/**
@@ -45,8 +156,22 @@ public class ZoomAnimation {
 	 */
 	public static class Builder {
 		private View zoomedOutView, zoomedInView;
+		private ZoomedViewFactory zoomedInViewFactory;
+		private boolean prefetchOnTouch;
 		private ViewGroup zoomedInContainer, zoomedOutContainer;
 		private int animationTime;
+		private Interpolator interpolator = Easing.DECELERATE;
+		private boolean hardwareLayer;
+		private boolean deferUntilLaidOut;
+		private int scaleMode = ZoomGeometry.CENTER_CROP;
+		private int fullImageResId;
+		private boolean generateThumbnail;
+		private boolean snapshot;
+		private boolean clipReveal;
+		private AnimationMetricsListener metricsListener;
+		private AnimationPolicy policy = AnimationPolicy.DEFAULT;
+		private boolean zoomOutOnClick = true;
+		private Activity activity;
 
 		/**
 		 * Constructor with mandatory parameters for the builder
@@ -60,8 +185,33 @@ public class ZoomAnimation {
 			this.zoomedInView = zoomedInView;
 			this.zoomedInContainer = zoomedInContainer;
 			this.zoomedOutContainer = null;
-			animationTime = zoomedInView.getContext().getResources()
+			animationTime = zoomedInContainer.getContext().getResources()
 					.getInteger(android.R.integer.config_shortAnimTime);
+			hardwareLayer = HardwareLayers.SUPPORTED;
+		}
+
+		/**
+		 * Constructor for a zoomed-in view that is inflated from a {@link ViewStub} on the first zoom-in. 
+		 * The inflated layout should fill the container and is hidden (visibility set to {@code GONE}) until it is zoomed into.
+		 * @param zoomedOutView The (intial) zoomed-out view
+		 * @param zoomedInStub The stub of the (final) zoomed-in view. Give it an {@code android:inflatedId} if several animations share it.
+		 * @param zoomedInContainer The container that the zoomed-in view should occupy
+		 */
+		public Builder(View zoomedOutView, ViewStub zoomedInStub,
+				ViewGroup zoomedInContainer) {
+			this(zoomedOutView, new ViewStubFactory(zoomedInStub), zoomedInContainer);
+		}
+
+		/**
+		 * Constructor for a zoomed-in view that is created by a factory on the first zoom-in
+		 * @param zoomedOutView The (intial) zoomed-out view
+		 * @param zoomedInViewFactory Creates the (final) zoomed-in view
+		 * @param zoomedInContainer The container that the zoomed-in view should occupy
+		 */
+		public Builder(View zoomedOutView, ZoomedViewFactory zoomedInViewFactory,
+				ViewGroup zoomedInContainer) {
+			this(zoomedOutView, (View) null, zoomedInContainer);
+			this.zoomedInViewFactory = zoomedInViewFactory;
 		}
 
 		/**
@@ -73,6 +223,17 @@ public class ZoomAnimation {
 			this.animationTime = animationTime;
 			return this;
 		}
+
+		/**
+		 * Sets the easing curve of the zoom. Default is {@link Easing#DECELERATE}. The interpolator is evaluated on every frame, so prefer an {@link Easing}
+		 * (or wrap a custom interpolator with {@link Easing#of(Interpolator)}) and share one instance between animations.
+		 * @param interpolator The easing curve
+		 * @return This {@code Builder} object to allow for chaining.
+		 */
+		public Builder interpolator(Interpolator interpolator) {
+			this.interpolator = interpolator;
+			return this;
+		}
 		
 		/**
 		 * The container of the zoomed-out view. This is optional. If you specify this container, it will be hidden (visibility set to {@code GONE}) when the zoomed-in view is being shown.
@@ -85,26 +246,222 @@ public class ZoomAnimation {
 			return this;
 		}
 
+		/**
+		 * Whether the zoomed-in view should be put on a hardware layer while it is being animated. The previous layer type is restored when the animation ends or is cancelled.
+		 * This saves redrawing the whole view hierarchy of the zoomed-in view on every frame. Default is {@code true} on API 11 and above. Has no effect below API 11, or if the window is not hardware accelerated.
+		 * @param hardwareLayer {@code true} to animate on a hardware layer
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder hardwareLayer(boolean hardwareLayer) {
+			this.hardwareLayer = hardwareLayer;
+			return this;
+		}
+
+		/**
+		 * Whether {@link ZoomAnimation#zoomIn()} should wait for a pending layout of the zoomed-out view or the container before it computes its geometry. 
+		 * The animation then starts in the next pre-draw pass, with correct bounds on its first frame and without an extra layout or draw pass.
+		 * Use this if you zoom in right after inflating or changing the content. Default is {@code false}.
+		 * <p>
+		 * Regardless of this setting, the start is always deferred if the views have not been measured at all yet.
+		 * @param deferUntilLaidOut {@code true} to wait for a pending layout
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder deferUntilLaidOut(boolean deferUntilLaidOut) {
+			this.deferUntilLaidOut = deferUntilLaidOut;
+			return this;
+		}
+
+		/**
+		 * How the zoomed-in view is matched to the zoomed-out view at the start of a zoom-in and the end of a zoom-out. Default is {@link ZoomGeometry#CENTER_CROP}.
+		 * @param scaleMode One of {@link ZoomGeometry#CENTER_CROP}, {@link ZoomGeometry#FIT_CENTER} or {@link ZoomGeometry#FIT_XY}
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder scaleMode(int scaleMode) {
+			this.scaleMode = scaleMode;
+			return this;
+		}
+
+		/**
+		 * Zoom progressively into a full-resolution image. Requires the zoomed-in view to be an {@link ImageView}.
+		 * <p>
+		 * {@link ZoomAnimation#zoomIn()} then starts immediately, showing the drawable of the zoomed-out view if it is an {@code ImageView} too. 
+		 * Meanwhile the resource is decoded off the main thread, subsampled to the size of the container, and swapped in when ready.
+		 * Decoded bitmaps are kept in a size-bounded in-memory LRU cache, so zooming into the same image again is instant.
+		 * @param fullImageResId The drawable resource of the full image
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder fullImageResource(int fullImageResId) {
+			// A lazily created view is checked once it exists
+			if (zoomedInViewFactory == null && !(zoomedInView instanceof ImageView)) {
+				throw new IllegalArgumentException("A full image resource requires the zoomed-in view to be an ImageView");
+			}
+			this.fullImageResId = fullImageResId;
+			return this;
+		}
+
+		/**
+		 * Show a thumbnail generated from the {@link #fullImageResource(int) full image} in the zoomed-out view, instead of shipping a separate thumbnail image. 
+		 * See {@link ThumbnailProvider}. The zoom then also starts from that thumbnail while the full image is decoded. Requires the zoomed-out view to be an {@link ImageView}.
+		 * Default is {@code false}.
+		 * @param generateThumbnail {@code true} to generate the thumbnail
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder generateThumbnail(boolean generateThumbnail) {
+			if (generateThumbnail && !(zoomedOutView instanceof ImageView)) {
+				throw new IllegalArgumentException("Generating a thumbnail requires the zoomed-out view to be an ImageView");
+			}
+			this.generateThumbnail = generateThumbnail;
+			return this;
+		}
+
+		/**
+		 * Animate a snapshot of the zoomed-in view instead of the live view. The zoomed-in view is rendered once into a bitmap, and that bitmap is animated
+		 * with a single matrix transform by a lightweight view inside the zoomed-in container. The live view is swapped back in when the animation ends.
+		 * Use this when the zoomed-in view is a deep layout that is expensive to draw. Snapshot bitmaps are pooled across runs. Default is {@code false}.
+		 * <p>
+		 * The snapshot view is added to the zoomed-in container on the first zoom-in, so the container should be a {@code FrameLayout} or similar that lets children overlap.
+		 * All the zooms into one container share that view; a zoom that starts while another one's snapshot is animating runs with its live view.
+		 * @param snapshot {@code true} to animate a snapshot
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder snapshot(boolean snapshot) {
+			this.snapshot = snapshot;
+			return this;
+		}
+
+		/**
+		 * Reveal the zoomed-in view through a growing clip rectangle instead of scaling it: the view stays at its final bounds, unscaled, 
+		 * and is clipped to a rectangle that animates from the bounds of the zoomed-out view to the container. Views in the container that the clip
+		 * covers completely are made invisible while they are covered, so they are not drawn underneath.
+		 * This fills far fewer pixels per frame than scaling the whole view, which matters on low-end GPUs. Default is {@code false}.
+		 * <p>
+		 * Requires API 18; below that the zoom scales as usual. Takes precedence over {@link #snapshot(boolean)}.
+		 * @param clipReveal {@code true} to reveal through a clip
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder clipReveal(boolean clipReveal) {
+			this.clipReveal = clipReveal;
+			return this;
+		}
+
+		/**
+		 * Register a listener that receives frame timing statistics after every zoom-in and zoom-out. Optional; without a listener nothing is measured.
+		 * @param metricsListener The listener, or {@code null} to measure nothing
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder metricsListener(AnimationMetricsListener metricsListener) {
+			this.metricsListener = metricsListener;
+			return this;
+		}
+
+		/**
+		 * Decides whether to run a zoom in full, as a plain crossfade of the zoomed-in view, or not at all, and when to downgrade a run that drops frames.
+		 * Default is {@link AnimationPolicy#DEFAULT}.
+		 * @param policy The policy
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder policy(AnimationPolicy policy) {
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * Only for a zoomed-in view given as a stub or a factory: create it as soon as the main thread is idle after the zoomed-out view is first touched,
+		 * rather than on the click that follows. See {@link ZoomAnimation#prefetch()}. Default is {@code false}.
+		 * <p>
+		 * A view has a single {@code OnTouchListener}: this sets the zoomed-out view's, replacing any listener the app has set, and sets it to {@code null}
+		 * once the zoomed-in view has been created or the animation is released. If the zoomed-out view has a touch listener of its own, leave this off
+		 * and call {@link ZoomAnimation#prefetch()} from that listener instead.
+		 * @param prefetchOnTouch {@code true} to prefetch on touch-down
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder prefetchOnTouch(boolean prefetchOnTouch) {
+			this.prefetchOnTouch = prefetchOnTouch;
+			return this;
+		}
+
+		/**
+		 * Whether a click on the zoomed-in view zooms out. The animation then sets the zoomed-in view's {@code OnClickListener} on the first zoom-in,
+		 * replacing any listener the app has set. Turn this off to handle the clicks yourself and call {@link ZoomAnimation#zoomOut()} from your own listener.
+		 * Default is {@code true}.
+		 * @param zoomOutOnClick {@code false} to leave the zoomed-in view's click listener alone
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder zoomOutOnClick(boolean zoomOutOnClick) {
+			this.zoomOutOnClick = zoomOutOnClick;
+			return this;
+		}
+
+		/**
+		 * Release the animation automatically when the activity is destroyed, see {@link ZoomAnimation#release()}. 
+		 * The activity and the animation are only referenced weakly for this. Requires API 14; below that, call {@code release()} from {@code onDestroy()} yourself.
+		 * @param activity The activity that owns the views
+		 * @return This {@code Builder} object to allow for chaining
+		 */
+		public Builder bindToActivity(Activity activity) {
+			this.activity = activity;
+			return this;
+		}
+
 		/**
 		 * Build the {@code ZoomAnimation} object with the specified properties
 		 * @return The {@code ZoomAnimation} object
 		 */
 		public ZoomAnimation build() {
+			if (generateThumbnail && fullImageResId == 0) {
+				throw new IllegalStateException("Generating a thumbnail requires a full image resource");
+			}
 			return new ZoomAnimation(this);
 		}
 	}
 
 	final Rect startBounds = new Rect();
 	final Rect finalBounds = new Rect();
-	float startScale;
+	private final Point globalOffset = new Point();
+	// Start x, y, scaleX and scaleY of the zoomed-in view, see ZoomGeometry
+	private final float[] startTransform = new float[ZoomGeometry.RESULT_SIZE];
+
+	// The geometry below is cached until the zoomed-out view or the container
+	// is laid out at different bounds, or anything in the window scrolls.
+	private boolean mGeometryValid;
+	// Whether startTransform has ever been computed, so that a stale one is
+	// better than none
+	private boolean mHasStartTransform;
+	// Registered when the geometry is first needed, and kept across zoom
+	// cycles until release(), so that a zoom-out lands where the zoomed-out
+	// view is by then
+	private final LayoutWatcher mLayoutWatcher = new LayoutWatcher(new Runnable() {
+		@Override
+		public void run() {
+			mGeometryValid = false;
+		}
+	});
 
 	private void init() {
+		Tracing.begin(Tracing.ZOOM_INIT);
+		try {
+			if (mMetricsRecorder == null) {
+				computeGeometry();
+			} else {
+				final long start = System.nanoTime();
+				computeGeometry();
+				mInitTimeNanos = System.nanoTime() - start;
+			}
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	private void computeGeometry() {
+		mLayoutWatcher.watch(mZoomedOutView, mZoomedInContainer);
+		if (mGeometryValid) {
+			return;
+		}
+
 		// Calculate the starting and ending bounds for the zoomed-in image.
 		// This step
 		// involves lots of math. Yay, math.
 
-		final Point globalOffset = new Point();
-
 		// The start bounds are the global visible rectangle of the zoomed out view,
 		// and the
 		// final bounds are the global visible rectangle of the container view.
@@ -112,144 +469,957 @@ public class ZoomAnimation {
 		// set the container view's offset as the origin for the bounds, since
 		// that's
 		// the origin for the positioning animation properties (X, Y).
-		mZoomedOutView.getGlobalVisibleRect(startBounds);
-		mZoomedInContainer.getGlobalVisibleRect(finalBounds, globalOffset);
+		if (mContainerBounds != null) {
+			mContainerBounds.get(finalBounds, globalOffset);
+		} else {
+			mZoomedInContainer.getGlobalVisibleRect(finalBounds, globalOffset);
+			finalBounds.offset(-globalOffset.x, -globalOffset.y);
+		}
+		if (!mZoomedOutView.getGlobalVisibleRect(startBounds)) {
+			// The zoomed-out view is not on screen (for example its container
+			// is gone while zoomed in). Keep the start computed last time.
+			return;
+		}
 		startBounds.offset(-globalOffset.x, -globalOffset.y);
-		finalBounds.offset(-globalOffset.x, -globalOffset.y);
-
-		// Adjust the start bounds to be the same aspect ratio as the final
-		// bounds using the
-		// "center crop" technique. This prevents undesirable stretching during
-		// the animation.
-		// Also calculate the start scaling factor (the end scaling factor is
-		// always 1.0).
-		
-		if ((float) finalBounds.width() / finalBounds.height() > (float) startBounds
-				.width() / startBounds.height()) {
-			// Extend start bounds horizontally
-			startScale = (float) startBounds.height() / finalBounds.height();
-			float startWidth = startScale * finalBounds.width();
-			float deltaWidth = (startWidth - startBounds.width()) / 2;
-			startBounds.left -= deltaWidth;
-			startBounds.right += deltaWidth;
+
+		// Match the start bounds to the final bounds according to the scale
+		// mode ("center crop" by default, which prevents undesirable
+		// stretching during the animation) and calculate the start scaling
+		// factors (the end scaling factor is always 1.0). An empty rect means
+		// the views have not been measured yet.
+		if (!ZoomGeometry.compute(mScaleMode, startBounds.left, startBounds.top, startBounds.right, startBounds.bottom,
+				finalBounds.left, finalBounds.top, finalBounds.right, finalBounds.bottom, startTransform, 0)) {
+			return;
+		}
+		mGeometryValid = true;
+		mHasStartTransform = true;
+	}
+
+	private final AnimationBackend.Driver.Callback mDriverCallback = new AnimationBackend.Driver.Callback() {
+		@Override
+		public void onFrame(float fraction) {
+			if (!mReduced && mDriver.isRunning() && mPolicy.shouldDowngrade(mDriver.getDroppedFrames())) {
+				reduce();
+			}
+			applyFraction(fraction);
+		}
+
+		@Override
+		public void onEnd(boolean cancelled) {
+			Tracing.begin(cancelled ? Tracing.ZOOM_CANCEL : Tracing.ZOOM_END);
+			try {
+				onRunEnded(cancelled);
+			} finally {
+				Tracing.end();
+			}
+		}
+	};
+
+	/**
+	 * Tidy up after a run, from the driver's end callback
+	 */
+	private void onRunEnded(boolean cancelled) {
+		restoreHardwareLayer();
+		if (mReduced) {
+			mReduced = false;
+			if (mSnapshotActive) {
+				mSnapshotOverlay.setAlpha(1f);
+			} else {
+				BACKEND.setAlpha(mZoomedInView, 1f);
+			}
+		}
+		if (mClipped && (!mZoomingIn || !cancelled)) {
+			// A finished reveal needs no clip. A finished zoom-out leaves
+			// nothing covered.
+			clearClip();
+			if (!mZoomingIn) {
+				restoreCoveredSiblings();
+			}
+		}
+		if (mSnapshotActive) {
+			// Swap the live view back in where the snapshot was
+			mSnapshotActive = false;
+			BACKEND.setTransform(mZoomedInView, mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY);
+			mZoomedInView.setVisibility(View.VISIBLE);
+			mSnapshotOverlay.hide(this);
+		}
+		if (mMetricsRecorder != null) {
+			mMetricsRecorder.end(cancelled);
+		}
+		if (mZoomingIn) {
+			if (!cancelled && mZoomedOutContainer != null) {
+				mZoomedOutContainer.setVisibility(View.GONE);
+			}
 		} else {
-			// Extend start bounds vertically
-			startScale = (float) startBounds.width() / finalBounds.width();
-			float startHeight = startScale * finalBounds.height();
-			float deltaHeight = (startHeight - startBounds.height()) / 2;
-			startBounds.top -= deltaHeight;
-			startBounds.bottom += deltaHeight;
+			BACKEND.setAlpha(mZoomedOutView, 1f);
+			mZoomedInView.setVisibility(View.GONE);
+		}
+	}
+
+	// Holds the animation strongly: the zoomed-in view is all that keeps a
+	// fire-and-forget animation alive while zoomed in. The view belongs to
+	// the same screen, so this does not outlive it.
+	private final OnClickListener mZoomOutClickListener = new OnClickListener() {
+		@Override
+		public void onClick(View v) {
+			zoomOut();
+		}
+	};
+	// Kept from the first zoom-in until release(), so that a zoom cycle
+	// does not set it again
+	private boolean mClickListenerInstalled;
+
+	private void installClickListener() {
+		if (mZoomOutOnClick && !mClickListenerInstalled) {
+			mZoomedInView.setOnClickListener(mZoomOutClickListener);
+			mClickListenerInstalled = true;
 		}
 	}
 
 	/**
-	 * Run the zoom in animation. This step also sets up the {@code OnClickListener} on the zoomed-in view (clicking on which calls the {@link #zoomOut()} method.
+	 * Calls {@link ZoomAnimation#release()} when the activity is destroyed, and unregisters itself
+	 */
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	private static final class ActivityBinding implements ActivityLifecycleCallbacks {
+
+		private final Application mApplication;
+		private final WeakReference<Activity> mActivity;
+		private final WeakReference<ZoomAnimation> mAnimation;
+
+		private ActivityBinding(Activity activity, ZoomAnimation animation) {
+			this.mApplication = activity.getApplication();
+			this.mActivity = new WeakReference<Activity>(activity);
+			this.mAnimation = new WeakReference<ZoomAnimation>(animation);
+		}
+
+		static void bind(Activity activity, ZoomAnimation animation) {
+			final ActivityBinding binding = new ActivityBinding(activity, animation);
+			binding.mApplication.registerActivityLifecycleCallbacks(binding);
+		}
+
+		@Override
+		public void onActivityDestroyed(Activity activity) {
+			if (activity != mActivity.get()) {
+				return;
+			}
+			mApplication.unregisterActivityLifecycleCallbacks(this);
+			final ZoomAnimation animation = mAnimation.get();
+			if (animation != null) {
+				animation.release();
+			}
+		}
+
+		@Override
+		public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+		}
+
+		@Override
+		public void onActivityStarted(Activity activity) {
+		}
+
+		@Override
+		public void onActivityResumed(Activity activity) {
+		}
+
+		@Override
+		public void onActivityPaused(Activity activity) {
+		}
+
+		@Override
+		public void onActivityStopped(Activity activity) {
+		}
+
+		@Override
+		public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+		}
+	}
+
+	/**
+	 * Run the zoom in animation. This step also sets up the {@code OnClickListener} on the zoomed-in view (clicking on which calls the {@link #zoomOut()} method,
+	 * unless turned off with {@link Builder#zoomOutOnClick(boolean)}.
 	 */
 	public void zoomIn() {
+		Tracing.begin(Tracing.ZOOM_IN);
+		try {
+			runZoomIn();
+		} finally {
+			Tracing.end();
+		}
+	}
+
+	private void runZoomIn() {
+		final boolean created = ensureZoomedInView();
 		init();
 		// If there's an animation in progress, cancel it immediately and
 		// proceed with this one.
-		if (mCurrentAnimator != null) {
-			mCurrentAnimator.cancel();
-		}
+		cancelRunning();
+		mZoomedIn = true;
 
 		
 		// Hide the zoomed-out view and show the zoomed-in view. When the animation
 		// begins,
 		// it will position the zoomed-in view in the place of the zoomed-out view.
-		ViewHelper.setAlpha(mZoomedOutView, 0f);
-		mZoomedInView.setVisibility(View.VISIBLE);
+		BACKEND.setAlpha(mZoomedOutView, 0f);
+		installClickListener();
+		if (mSnapshotOverlay != null) {
+			// Laid out but not drawn until the snapshot has been taken
+			mSnapshotOverlay.attach();
+			mZoomedInView.setVisibility(View.INVISIBLE);
+		} else {
+			mZoomedInView.setVisibility(View.VISIBLE);
+		}
 
+		if (created || !mGeometryValid || (mDeferUntilLaidOut && isLayoutPending()) || !isSnapshotReady()) {
+			// Start in the pre-draw pass of the coming traversal, once the
+			// bounds can be trusted. Nothing is drawn in between.
+			defer(PENDING_ZOOM_IN);
+			return;
+		}
+		startZoomIn();
+	}
+
+	private void startZoomIn() {
+		loadFullImage();
 		// Set the pivot point for SCALE_X and SCALE_Y transformations to the
 		// top-left corner of
 		// the zoomed-in view (the default is the center of the view).
-		ViewHelper.setPivotX(mZoomedInView, 0f);
-		ViewHelper.setPivotY(mZoomedInView, 0f);
-
-		// Construct and run the parallel animation of the four translation and
-		// scale properties
-		// (X, Y, SCALE_X, and SCALE_Y).
-		AnimatorSet set = new AnimatorSet();
-		set.play(
-				ObjectAnimator.ofFloat(mZoomedInView, "x", startBounds.left,
-						finalBounds.left))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "y",
-						startBounds.top, finalBounds.top))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "scaleX",
-						startScale, 1f))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "scaleY",
-						startScale, 1f));
-		
-		set.setDuration(mAnimationTime);
-		set.setInterpolator(new DecelerateInterpolator());
-		set.addListener(new AnimatorListenerAdapter() {
-			@Override
-			public void onAnimationEnd(Animator animation) {
-				mCurrentAnimator = null;
-				if(mZoomedOutContainer != null){
-					mZoomedOutContainer.setVisibility(View.GONE);
-				}
+		BACKEND.setPivot(mZoomedInView, 0f, 0f);
+		final int decision = mPolicy.decideFor(mZoomedInContainer);
+		startSnapshot(decision);
+		targetZoomIn();
+		start(true, decision);
+	}
+
+	/**
+	 * Re-target the animation of the four translation and scale properties (X, Y, SCALE_X, and SCALE_Y) from the zoomed-out view to the container
+	 */
+	private void targetZoomIn() {
+		mFromX = startTransform[ZoomGeometry.START_X];
+		mToX = finalBounds.left;
+		mFromY = startTransform[ZoomGeometry.START_Y];
+		mToY = finalBounds.top;
+		mFromScaleX = startTransform[ZoomGeometry.START_SCALE_X];
+		mToScaleX = 1f;
+		mFromScaleY = startTransform[ZoomGeometry.START_SCALE_Y];
+		mToScaleY = 1f;
+		if (mClipReveal) {
+			setRect(mFromClip, startBounds);
+			setRect(mToClip, finalBounds);
+		}
+	}
+
+	boolean isLayoutPending() {
+		return mZoomedOutView.isLayoutRequested() || mZoomedInContainer.isLayoutRequested();
+	}
+
+	private boolean isSnapshotReady() {
+		return mSnapshotOverlay == null
+				|| (mSnapshotOverlay.isReady() && !mZoomedInView.isLayoutRequested());
+	}
+
+	/**
+	 * Take the snapshot for this run if in snapshot mode and possible, and put the live view on a hardware layer otherwise. A run that is skipped needs neither.
+	 */
+	private void startSnapshot(int decision) {
+		mSnapshotActive = decision == AnimationPolicy.FULL && mSnapshotOverlay != null && mSnapshotOverlay.show(this, mZoomedInView);
+		if (mSnapshotActive) {
+			mZoomedInView.setVisibility(View.INVISIBLE);
+		} else {
+			mZoomedInView.setVisibility(View.VISIBLE);
+			if (decision != AnimationPolicy.SKIP) {
+				enableHardwareLayer();
 			}
+		}
+	}
+
+	private static final int PENDING_NONE = 0;
+	private static final int PENDING_ZOOM_IN = 1;
+	private static final int PENDING_ZOOM_OUT = 2;
+	private static final int PENDING_RESTORE = 3;
 
-			@Override
-			public void onAnimationCancel(Animator animation) {
-				mCurrentAnimator = null;
+	// What the pre-draw listener is waiting to do, if anything
+	private int mPending = PENDING_NONE;
+
+	private final OnPreDrawListener mPreDrawListener = new OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			Tracing.begin(Tracing.ZOOM_DEFERRED);
+			try {
+				runPending();
+			} finally {
+				Tracing.end();
 			}
-		});
-		set.start();
-		mCurrentAnimator = set;
-		
-		mZoomedInView.setOnClickListener(new OnClickListener() {
-			
-			@Override
-			public void onClick(View v) {
-				zoomOut();
+			return true;
+		}
+	};
+
+	/**
+	 * Start, or jump to the end of, the zoom that was waiting for the pre-draw pass, once the layout it was waiting for has happened
+	 */
+	private void runPending() {
+		init();
+		if (!isReadyFor(mPending)) {
+			// Still waiting for layout. Let this frame draw and try again.
+			return;
+		}
+		final int pending = mPending;
+		removePreDrawListener();
+		if (pending == PENDING_ZOOM_IN && mGeometryValid) {
+			startZoomIn();
+		} else if (pending == PENDING_ZOOM_OUT && (mGeometryValid || mHasStartTransform)) {
+			startZoomOut();
+		} else if (pending == PENDING_ZOOM_OUT) {
+			// Never knew where the zoomed-out view is, and it is not on
+			// screen now either. Nothing to animate to.
+			jumpToZoomedOut();
+		} else {
+			// Restored, or laid out with nothing to zoom from. Go straight
+			// to the end state rather than animating from a degenerate rect.
+			jumpToZoomedIn();
+		}
+	}
+
+	private boolean isReadyFor(int pending) {
+		if (pending == PENDING_RESTORE) {
+			// Only the container matters. The zoomed-out view may be in a
+			// container that is gone, where it is never laid out.
+			return !mZoomedInContainer.isLayoutRequested();
+		}
+		if (!mGeometryValid && isLayoutPending()) {
+			return false;
+		}
+		return pending != PENDING_ZOOM_IN || isSnapshotReady();
+	}
+
+	private void defer(int pending) {
+		removePreDrawListener();
+		mZoomedInContainer.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+		mPending = pending;
+	}
+
+	private void removePreDrawListener() {
+		if (mPending != PENDING_NONE) {
+			// Ask the container again: if it was attached in the meantime its
+			// floating observer has been merged into the window's one.
+			final ViewTreeObserver observer = mZoomedInContainer.getViewTreeObserver();
+			if (observer.isAlive()) {
+				observer.removeOnPreDrawListener(mPreDrawListener);
 			}
-		});
+			mPending = PENDING_NONE;
+		}
+	}
+
+	private void jumpToZoomedIn() {
+		loadFullImage();
+		mZoomedInView.setVisibility(View.VISIBLE);
+		BACKEND.setTransform(mZoomedInView, finalBounds.left, finalBounds.top, 1f, 1f);
+		if (mZoomedOutContainer != null) {
+			mZoomedOutContainer.setVisibility(View.GONE);
+		}
+	}
+
+	private void jumpToZoomedOut() {
+		BACKEND.setAlpha(mZoomedOutView, 1f);
+		mZoomedInView.setVisibility(View.GONE);
 	}
 
 	/**
 	 * Run the zoom-out animation
 	 */
 	public void zoomOut() {
-		final float startScaleFinal = startScale;
-		if (mCurrentAnimator != null) {
-			mCurrentAnimator.cancel();
+		Tracing.begin(Tracing.ZOOM_OUT);
+		try {
+			runZoomOut();
+		} finally {
+			Tracing.end();
 		}
+	}
 
-		if(mZoomedOutContainer != null){
+	private void runZoomOut() {
+		if (mZoomedInView == null) {
+			// Never zoomed in
+			return;
+		}
+		cancelRunning();
+		mZoomedIn = false;
+		final boolean shown = mZoomedOutContainer != null && mZoomedOutContainer.getVisibility() != View.VISIBLE;
+		if (shown) {
 			mZoomedOutContainer.setVisibility(View.VISIBLE);
 		}
-		// Animate the four positioning/sizing properties in parallel, back to
-		// their
-		// original values.
-		AnimatorSet set = new AnimatorSet();
-		set.play(
-				ObjectAnimator.ofFloat(mZoomedInView, "x", startBounds.left))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "y",
-						startBounds.top))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "scaleX",
-						startScaleFinal))
-				.with(ObjectAnimator.ofFloat(mZoomedInView, "scaleY",
-						startScaleFinal));
-		set.setDuration(mAnimationTime);
-		set.setInterpolator(new DecelerateInterpolator());
-		set.addListener(new AnimatorListenerAdapter() {
-			@Override
-			public void onAnimationEnd(Animator animation) {
-				ViewHelper.setAlpha(mZoomedOutView, 1f);
-				mZoomedInView.setVisibility(View.GONE);
-				mCurrentAnimator = null;
-			}
-
-			@Override
-			public void onAnimationCancel(Animator animation) {
-				ViewHelper.setAlpha(mZoomedOutView, 1f);
-				mZoomedInView.setVisibility(View.GONE);
-				mCurrentAnimator = null;
-			}
-		});
-		set.start();
-		mCurrentAnimator = set;
+		// The zoomed-out view may have moved (scroll, rotation) since zoomIn()
+		init();
+		if (!mGeometryValid && shown) {
+			// Its container was gone, so it has not been laid out where it is
+			// now, for example after a rotation. Start once it has been.
+			defer(PENDING_ZOOM_OUT);
+			return;
+		}
+		if (!mGeometryValid && !mHasStartTransform) {
+			jumpToZoomedOut();
+			return;
+		}
+		startZoomOut();
+	}
+
+	private void startZoomOut() {
+		targetZoomOut();
+		final int decision = mPolicy.decideFor(mZoomedInContainer);
+		startSnapshot(decision);
+		start(false, decision);
+	}
+
+	private void targetZoomOut() {
+		// Animate the four positioning/sizing properties together, from
+		// wherever they are now back to their original values.
+		mFromX = BACKEND.getX(mZoomedInView);
+		mToX = startTransform[ZoomGeometry.START_X];
+		mFromY = BACKEND.getY(mZoomedInView);
+		mToY = startTransform[ZoomGeometry.START_Y];
+		mFromScaleX = BACKEND.getScaleX(mZoomedInView);
+		mToScaleX = startTransform[ZoomGeometry.START_SCALE_X];
+		mFromScaleY = BACKEND.getScaleY(mZoomedInView);
+		mToScaleY = startTransform[ZoomGeometry.START_SCALE_Y];
+		if (mClipReveal) {
+			if (mClipped) {
+				System.arraycopy(mCurrentClip, 0, mFromClip, 0, RECT_SIZE);
+			} else {
+				setRect(mFromClip, finalBounds);
+			}
+			setRect(mToClip, startBounds);
+		}
+	}
+
+	/**
+	 * Save whether this animation is zoomed in, so that {@link #restoreInstanceState(Bundle, String)} can bring it back after a configuration change. 
+	 * Call this from {@code onSaveInstanceState()}. A zoom that is still running is saved as if it had finished.
+	 * @param outState The bundle to save to
+	 * @param key The key to save under. Each animation of a screen needs its own key.
+	 */
+	public void saveInstanceState(Bundle outState, String key) {
+		outState.putBoolean(key, mZoomedIn);
+	}
+
+	/**
+	 * Bring back a state saved by {@link #saveInstanceState(Bundle, String)}. Call this from {@code onCreate()}, once the views have been created.
+	 * <p>
+	 * If the animation was zoomed in, it is put straight into the zoomed-in state, without animating. The geometry is computed once the views have been laid out
+	 * in the new configuration, and a later {@link #zoomOut()} returns to wherever the zoomed-out view is by then.
+	 * @param savedInstanceState The bundle saved to, or {@code null}
+	 * @param key The key that was saved under
+	 * @return Whether the animation was restored zoomed in
+	 */
+	public boolean restoreInstanceState(Bundle savedInstanceState, String key) {
+		if (savedInstanceState == null || !savedInstanceState.getBoolean(key)) {
+			return false;
+		}
+		ensureZoomedInView();
+		cancelRunning();
+		mZoomedIn = true;
+		// The end state, as far as it is known before the first layout. The
+		// bounds and the full image follow in the first pre-draw pass.
+		BACKEND.setAlpha(mZoomedOutView, 0f);
+		installClickListener();
+		mZoomedInView.setVisibility(View.VISIBLE);
+		if (mZoomedOutContainer != null) {
+			mZoomedOutContainer.setVisibility(View.GONE);
+		}
+		if (mSnapshotOverlay != null) {
+			// Laid out along with everything else, ready for the zoom-out
+			mSnapshotOverlay.attach();
+		}
+		defer(PENDING_RESTORE);
+		return true;
+	}
+
+	// Key of the full image for the current container size and configuration, and the thumbnail
+	// drawable copy shown until it is decoded. Both are only rebuilt when
+	// their source changes.
+	private String mFullImageKey;
+	private int mFullImageWidth, mFullImageHeight;
+	private String mFullImageConfigurationKey;
+	private Drawable mThumbnailSource;
+	private Drawable mThumbnailCopy;
+
+	private BitmapLoader.Callback mFullImageCallback;
+
+	/**
+	 * Swaps a decoded full image into the zoomed-in view. Waiting decodes are held by the static loader, so the view is only referenced weakly:
+	 * a decode that finishes after the activity is gone must not have kept it alive.
+	 */
+	private static final class FullImageCallback implements BitmapLoader.Callback {
+
+		private final WeakReference<View> mView;
+
+		FullImageCallback(View view) {
+			this.mView = new WeakReference<View>(view);
+		}
+
+		@Override
+		public void onBitmapLoaded(String key, Bitmap bitmap) {
+			final View view = mView.get();
+			// Only swap in if the view is still waiting for this very image:
+			// another animation may have taken it over in the meantime.
+			if (view != null && bitmap != null && key.equals(view.getTag(R.id.doubletake_image_key))) {
+				view.setTag(R.id.doubletake_image_key, null);
+				((ImageView) view).setImageBitmap(bitmap);
+			}
+		}
+	}
+
+	private void loadFullImage() {
+		if (mFullImageResId == 0) {
+			return;
+		}
+		final ImageView imageView = (ImageView) mZoomedInView;
+		final int width = finalBounds.width();
+		final int height = finalBounds.height();
+		final String configurationKey = BitmapLoader.configurationKey(imageView.getResources());
+		if (mFullImageKey == null || width != mFullImageWidth || height != mFullImageHeight
+				|| configurationKey != mFullImageConfigurationKey) {
+			mFullImageKey = BitmapLoader.resourceKey(mFullImageResId, width, height, configurationKey);
+			mFullImageWidth = width;
+			mFullImageHeight = height;
+			mFullImageConfigurationKey = configurationKey;
+		}
+
+		final Bitmap cached = BitmapLoader.getCached(mFullImageKey);
+		if (cached != null) {
+			imageView.setTag(R.id.doubletake_image_key, null);
+			imageView.setImageBitmap(cached);
+			return;
+		}
+		// Start with the thumbnail. A drawable cannot be shown by two views at
+		// once, so show a copy of it.
+		if (mZoomedOutView instanceof ImageView) {
+			final Drawable thumbnail = ((ImageView) mZoomedOutView).getDrawable();
+			if (thumbnail != mThumbnailSource) {
+				mThumbnailSource = thumbnail;
+				mThumbnailCopy = thumbnail == null || thumbnail.getConstantState() == null ? null
+						: thumbnail.getConstantState().newDrawable(mZoomedInView.getResources());
+			}
+			imageView.setImageDrawable(mThumbnailCopy);
+		}
+		imageView.setTag(R.id.doubletake_image_key, mFullImageKey);
+		BitmapLoader.loadResource(mZoomedInView.getResources(), mFullImageResId, width, height,
+				mFullImageKey, mFullImageCallback);
+	}
+
+	private void start(boolean zoomingIn, int decision) {
+		mZoomingIn = zoomingIn;
+		pinForClipReveal();
+		// Apply the first frame right away, the driver only does so on its
+		// first tick.
+		applyFraction(0f);
+		if (decision != AnimationPolicy.FULL) {
+			reduce();
+			applyFraction(0f);
+		}
+		if (mMetricsRecorder != null) {
+			mMetricsRecorder.begin(zoomingIn ? AnimationMetrics.TYPE_ZOOM_IN : AnimationMetrics.TYPE_ZOOM_OUT,
+					mAnimationTime, mInitTimeNanos);
+		}
+		mDriver.start();
+		if (decision == AnimationPolicy.SKIP) {
+			mDriver.end();
+		}
+	}
+
+	private void pinForClipReveal() {
+		if (mClipReveal) {
+			// The view stays at its final bounds; only its clip moves
+			mFromX = mToX = finalBounds.left;
+			mFromY = mToY = finalBounds.top;
+			mFromScaleX = mToScaleX = 1f;
+			mFromScaleY = mToScaleY = 1f;
+		}
+	}
+
+	/**
+	 * Switch the current run to the crossfade-only variant: a zoom-in puts the view at its final bounds and fades it in from the current progress,
+	 * a zoom-out leaves it where it is and fades it out.
+	 */
+	private void reduce() {
+		mReduced = true;
+		if (mClipReveal) {
+			// The fade shows what is underneath
+			restoreCoveredSiblings();
+			if (mZoomingIn) {
+				clearClip();
+			}
+		}
+		if (mZoomingIn) {
+			mCurrentX = mToX;
+			mCurrentY = mToY;
+			mCurrentScaleX = mToScaleX;
+			mCurrentScaleY = mToScaleY;
+		}
+		if (mSnapshotActive) {
+			mSnapshotOverlay.setTransform(mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY);
+		} else {
+			BACKEND.setTransform(mZoomedInView, mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY);
+		}
+	}
+
+	// The transforms of the last frame, handed to the live view when a
+	// snapshot run ends
+	private float mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY;
+
+	private void applyFraction(float fraction) {
+		if (mReduced) {
+			final float alpha = mZoomingIn ? fraction : 1f - fraction;
+			if (mSnapshotActive) {
+				mSnapshotOverlay.setAlpha(alpha);
+			} else {
+				BACKEND.setAlpha(mZoomedInView, alpha);
+			}
+			return;
+		}
+		mCurrentX = mFromX + (mToX - mFromX) * fraction;
+		mCurrentY = mFromY + (mToY - mFromY) * fraction;
+		mCurrentScaleX = mFromScaleX + (mToScaleX - mFromScaleX) * fraction;
+		mCurrentScaleY = mFromScaleY + (mToScaleY - mFromScaleY) * fraction;
+		if (mSnapshotActive) {
+			mSnapshotOverlay.setTransform(mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY);
+		} else {
+			BACKEND.setTransform(mZoomedInView, mCurrentX, mCurrentY, mCurrentScaleX, mCurrentScaleY);
+		}
+		if (mClipReveal) {
+			applyClip(fraction);
+		}
+	}
+
+	// Clip-reveal: left, top, right and bottom of the clip in container
+	// coordinates, like startBounds and finalBounds
+	private static final int RECT_SIZE = 4;
+	private final float[] mFromClip = new float[RECT_SIZE];
+	private final float[] mToClip = new float[RECT_SIZE];
+	private final float[] mCurrentClip = new float[RECT_SIZE];
+	private final Rect mClipRect = new Rect();
+	private boolean mClipped;
+
+	private static void setRect(float[] out, Rect rect) {
+		out[0] = rect.left;
+		out[1] = rect.top;
+		out[2] = rect.right;
+		out[3] = rect.bottom;
+	}
+
+	private void applyClip(float fraction) {
+		for (int i = 0; i < RECT_SIZE; i++) {
+			mCurrentClip[i] = mFromClip[i] + (mToClip[i] - mFromClip[i]) * fraction;
+		}
+		// The clip is in the coordinates of the view, which sits at its final
+		// bounds
+		mClipRect.set((int) (mCurrentClip[0] - mCurrentX), (int) (mCurrentClip[1] - mCurrentY),
+				(int) Math.ceil(mCurrentClip[2] - mCurrentX), (int) Math.ceil(mCurrentClip[3] - mCurrentY));
+		ClipBounds.set(mZoomedInView, mClipRect);
+		mClipped = true;
+		hideCoveredSiblings();
+	}
+
+	private void clearClip() {
+		ClipBounds.clear(mZoomedInView);
+		mClipped = false;
+	}
+
+	/**
+	 * Make the views of the container that the current clip covers completely invisible, and show the ones it no longer covers again. 
+	 * Hidden views are marked with a tag, so views that were invisible to begin with are left alone.
+	 */
+	private void hideCoveredSiblings() {
+		final float left = mCurrentClip[0];
+		final float top = mCurrentClip[1];
+		final float right = mCurrentClip[2];
+		final float bottom = mCurrentClip[3];
+		for (int i = 0, count = mZoomedInContainer.getChildCount(); i < count; i++) {
+			final View child = mZoomedInContainer.getChildAt(i);
+			if (child == mZoomedInView) {
+				continue;
+			}
+			final boolean covered = left <= child.getLeft() && top <= child.getTop()
+					&& right >= child.getRight() && bottom >= child.getBottom();
+			if (covered) {
+				if (child.getVisibility() == View.VISIBLE) {
+					child.setTag(R.id.doubletake_covered, Boolean.TRUE);
+					child.setVisibility(View.INVISIBLE);
+				}
+			} else if (child.getTag(R.id.doubletake_covered) != null) {
+				child.setTag(R.id.doubletake_covered, null);
+				child.setVisibility(View.VISIBLE);
+			}
+		}
+	}
+
+	private void restoreCoveredSiblings() {
+		for (int i = 0, count = mZoomedInContainer.getChildCount(); i < count; i++) {
+			final View child = mZoomedInContainer.getChildAt(i);
+			if (child.getTag(R.id.doubletake_covered) != null) {
+				child.setTag(R.id.doubletake_covered, null);
+				// Unless someone else has changed it in the meantime
+				if (child.getVisibility() == View.INVISIBLE) {
+					child.setVisibility(View.VISIBLE);
+				}
+			}
+		}
+	}
+
+	private void cancelRunning() {
+		removePreDrawListener();
+		mDriver.cancel();
+		if (mSwitchDriver != null) {
+			// Ends the switch for both animations taking part in it
+			mSwitchDriver.cancel();
+		}
+	}
+
+	private boolean mPrefetchPending;
+	// The view the prefetch touch listener was set on, until it is removed
+	private View mPrefetchTouchView;
+
+	private final IdleHandler mPrefetchIdleHandler = new IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			mPrefetchPending = false;
+			ensureZoomedInView();
+			return false;
+		}
+	};
+
+	private final OnTouchListener mPrefetchTouchListener = new OnTouchListener() {
+		@Override
+		public boolean onTouch(View v, MotionEvent event) {
+			if (event.getAction() == MotionEvent.ACTION_DOWN) {
+				prefetch();
+			}
+			// Let the click through
+			return false;
+		}
+	};
+
+	/**
+	 * Create a zoomed-in view given as a stub or a factory the next time the main thread is idle, instead of on the first {@link #zoomIn()}. 
+	 * Does nothing if the view exists already. Must be called on the main thread.
+	 */
+	public void prefetch() {
+		if (mZoomedInView != null || mPrefetchPending) {
+			return;
+		}
+		mPrefetchPending = true;
+		Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+	}
+
+	private void removePrefetch() {
+		if (mPrefetchPending) {
+			Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+			mPrefetchPending = false;
+		}
+	}
+
+	/**
+	 * Create the zoomed-in view if it was given as a stub or a factory and does not exist yet
+	 * @return Whether it was created by this call
+	 */
+	boolean ensureZoomedInView() {
+		if (mZoomedInView != null) {
+			return false;
+		}
+		removePrefetch();
+		final View view = mZoomedInViewFactory.createZoomedInView(mZoomedInContainer);
+		// Hidden until zoomed into, like an eagerly inflated zoomed-in view
+		view.setVisibility(View.GONE);
+		if (view.getParent() == null) {
+			mZoomedInContainer.addView(view, new ViewGroup.LayoutParams(
+					ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		}
+		setZoomedInView(view);
+		removePrefetchTouchListener();
+		return true;
+	}
+
+	private void removePrefetchTouchListener() {
+		if (mPrefetchTouchView != null) {
+			mPrefetchTouchView.setOnTouchListener(null);
+			mPrefetchTouchView = null;
+		}
+	}
+
+	private void setZoomedInView(View zoomedInView) {
+		if (mFullImageResId != 0 && !(zoomedInView instanceof ImageView)) {
+			throw new IllegalStateException("A full image resource requires the zoomed-in view to be an ImageView");
+		}
+		mZoomedInView = zoomedInView;
+		mFullImageCallback = new FullImageCallback(zoomedInView);
+	}
+
+	/**
+	 * @return The container the zoom takes place in. Requests for this animation are coalesced on it, see {@link AnimationRequestQueue}
+	 */
+	ViewGroup getZoomedInContainer() {
+		return mZoomedInContainer;
+	}
+
+	/**
+	 * Point this animation at another zoomed-out view, for controllers that share one zoomed-in view between many items. A running zoom is cancelled.
+	 * The new view takes over the alpha of the previous one, which is made fully opaque again.
+	 * @param zoomedOutView The new zoomed-out view. Must be in the same window as the previous one.
+	 */
+	void setZoomedOutView(View zoomedOutView) {
+		if (zoomedOutView == mZoomedOutView) {
+			return;
+		}
+		cancelRunning();
+		BACKEND.setAlpha(zoomedOutView, BACKEND.getAlpha(mZoomedOutView));
+		BACKEND.setAlpha(mZoomedOutView, 1f);
+		// Registered on the new view's tree when the geometry is next needed
+		mLayoutWatcher.release();
+		mZoomedOutView = zoomedOutView;
+	}
+
+	/**
+	 * Compute the geometry again on the next zoom, for controllers whose zoomed-out views can move without being laid out or scrolled
+	 */
+	void invalidateGeometry() {
+		mGeometryValid = false;
+	}
+
+	// Hooks for ContainerZoomController, which runs a switch from one zoomed
+	// item to another with a single driver of its own
+
+	// That driver, while this animation takes part in a switch
+	private AnimationBackend.Driver mSwitchDriver;
+	// The container bounds shared by the items of the controller, if any
+	private ContainerBounds mContainerBounds;
+
+	void setContainerBounds(ContainerBounds containerBounds) {
+		this.mContainerBounds = containerBounds;
+		mGeometryValid = false;
+	}
+
+	/**
+	 * @return Whether the last request was to zoom in, including a restored zoom-in
+	 */
+	boolean isZoomedIn() {
+		return mZoomedIn;
+	}
+
+	/**
+	 * @return The zoomed-in view, or {@code null} if it has not been created yet
+	 */
+	View getZoomedInView() {
+		return mZoomedInView;
+	}
+
+	/**
+	 * Show the zoomed-out container, so that the zoomed-out view is laid out where it would be zoomed back to
+	 * @return Whether it was hidden before
+	 */
+	boolean showZoomedOutContainer() {
+		if (mZoomedOutContainer == null || mZoomedOutContainer.getVisibility() == View.VISIBLE) {
+			return false;
+		}
+		mZoomedOutContainer.setVisibility(View.VISIBLE);
+		return true;
+	}
+
+	/**
+	 * @return Whether the geometry is known, computing it if need be
+	 */
+	boolean prepareGeometry() {
+		init();
+		return mGeometryValid;
+	}
+
+	/**
+	 * Prepare this animation to be moved by another driver: zooming in from the zoomed-out view or back to it. The geometry must be valid.
+	 * Until {@link #endSwitch(boolean)}, its own zooms cancel that driver.
+	 */
+	void beginSwitch(boolean zoomingIn, AnimationBackend.Driver driver) {
+		cancelRunning();
+		mSwitchDriver = driver;
+		mZoomedIn = zoomingIn;
+		mZoomingIn = zoomingIn;
+		if (zoomingIn) {
+			BACKEND.setAlpha(mZoomedOutView, 0f);
+			installClickListener();
+			loadFullImage();
+			BACKEND.setPivot(mZoomedInView, 0f, 0f);
+			targetZoomIn();
+		} else {
+			targetZoomOut();
+		}
+		pinForClipReveal();
+		// Both views of a switch are drawn live, on hardware layers
+		mZoomedInView.setVisibility(View.VISIBLE);
+		enableHardwareLayer();
+		applyFraction(0f);
+	}
+
+	void applySwitchFraction(float fraction) {
+		applyFraction(fraction);
+	}
+
+	void endSwitch(boolean cancelled) {
+		mSwitchDriver = null;
+		onRunEnded(cancelled);
+	}
+
+	/**
+	 * Go straight to the zoomed-out state, without animating
+	 */
+	void jumpOut() {
+		cancelRunning();
+		mZoomedIn = false;
+		showZoomedOutContainer();
+		if (mZoomedInView != null) {
+			jumpToZoomedOut();
+		}
+	}
+
+	/**
+	 * Cancel a running or pending zoom, including one requested through {@link AnimationRequestQueue}, and remove every listener this animation installed on the views and their view tree. 
+	 * The views are left where they are. The bitmaps pooled for snapshot zooms are freed as well.
+	 * <p>
+	 * Call this once the views are going away, typically from {@code onDestroy()}: a running animation is otherwise kept alive, together with its views,
+	 * by the shared animation ticker until it ends. The animation can still be used afterwards and re-installs its listeners on the next zoom.
+	 */
+	public void release() {
+		AnimationRequestQueue.cancelRequestsOf(this);
+		cancelRunning();
+		mLayoutWatcher.release();
+		removePrefetch();
+		removePrefetchTouchListener();
+		if (mZoomedInView == null) {
+			return;
+		}
+		if (mClickListenerInstalled) {
+			mZoomedInView.setOnClickListener(null);
+			mClickListenerInstalled = false;
+		}
+		// Drop a pending full image; its decode still fills the cache
+		mZoomedInView.setTag(R.id.doubletake_image_key, null);
+		mThumbnailSource = null;
+		mThumbnailCopy = null;
+		if (mSnapshotOverlay != null) {
+			mSnapshotOverlay.hide(this);
+			// The views are going away, and the pooled bitmaps are screen-sized
+			SnapshotPool.trim();
+		}
+		if (mClipReveal) {
+			restoreCoveredSiblings();
+			if (mClipped) {
+				clearClip();
+			}
+		}
+	}
+
+	private void enableHardwareLayer() {
+		if (mHardwareLayer && mPreviousLayerType == HardwareLayers.NOT_SET) {
+			mPreviousLayerType = HardwareLayers.enable(mZoomedInView);
+		}
+	}
+
+	private void restoreHardwareLayer() {
+		HardwareLayers.restore(mZoomedInView, mPreviousLayerType);
+		mPreviousLayerType = HardwareLayers.NOT_SET;
 	}
 }
@@ -0,0 +1,124 @@
+package com.github.curioustechizen.doubletake;
+
+/**
+ * The math behind {@link ZoomAnimation}, free of any Android dependency so that it can be unit tested and benchmarked on a plain JVM.
+ * <p>
+ * The zoomed-in view is laid out over the <em>final</em> rectangle (the container). At the start of a zoom it is scaled, with its pivot at the top-left corner,
+ * and translated so that it lines up with the <em>start</em> rectangle (the zoomed-out view). This class computes that start translation and scale.
+ * All rectangles are given as {@code left, top, right, bottom} in the same coordinate space, and all results are written into caller-supplied arrays, so nothing is allocated.
+ */
+public final class ZoomGeometry {
+
+	/**
+	 * Scale uniformly so that the zoomed-in view covers the zoomed-out view completely, overflowing on one axis. This is the default.
+	 */
+	public static final int CENTER_CROP = 0;
+
+	/**
+	 * Scale uniformly so that the zoomed-in view fits inside the zoomed-out view, leaving a margin on one axis
+	 */
+	public static final int FIT_CENTER = 1;
+
+	/**
+	 * Scale each axis independently so that the zoomed-in view matches the zoomed-out view exactly. The zoomed-in view is stretched during the animation if the aspect ratios differ.
+	 */
+	public static final int FIT_XY = 2;
+
+	/**
+	 * Index of the start x coordinate in a result
+	 */
+	public static final int START_X = 0;
+
+	/**
+	 * Index of the start y coordinate in a result
+	 */
+	public static final int START_Y = 1;
+
+	/**
+	 * Index of the horizontal start scale in a result
+	 */
+	public static final int START_SCALE_X = 2;
+
+	/**
+	 * Index of the vertical start scale in a result
+	 */
+	public static final int START_SCALE_Y = 3;
+
+	/**
+	 * Number of floats written for every result
+	 */
+	public static final int RESULT_SIZE = 4;
+
+	/**
+	 * Number of ints describing one rectangle in the packed arrays of {@link #computeBatch(int, int[], int[], int, float[])}
+	 */
+	public static final int RECT_SIZE = 4;
+
+	private ZoomGeometry() {
+	}
+
+	/**
+	 * Compute the start translation and scale of the zoomed-in view.
+	 * @param mode One of {@link #CENTER_CROP}, {@link #FIT_CENTER} or {@link #FIT_XY}
+	 * @param out Receives {@link #RESULT_SIZE} floats starting at {@code outOffset}, see {@link #START_X} and friends
+	 * @param outOffset Where to write the result in {@code out}
+	 * @return {@code false} if either rectangle is empty. Nothing is written to {@code out} in that case.
+	 */
+	public static boolean compute(int mode, int startLeft, int startTop, int startRight, int startBottom,
+			int finalLeft, int finalTop, int finalRight, int finalBottom, float[] out, int outOffset) {
+		final int startWidth = startRight - startLeft;
+		final int startHeight = startBottom - startTop;
+		final int finalWidth = finalRight - finalLeft;
+		final int finalHeight = finalBottom - finalTop;
+		if (startWidth <= 0 || startHeight <= 0 || finalWidth <= 0 || finalHeight <= 0) {
+			return false;
+		}
+
+		final float scaleX = (float) startWidth / finalWidth;
+		final float scaleY = (float) startHeight / finalHeight;
+		if (mode == FIT_XY) {
+			out[outOffset + START_X] = startLeft;
+			out[outOffset + START_Y] = startTop;
+			out[outOffset + START_SCALE_X] = scaleX;
+			out[outOffset + START_SCALE_Y] = scaleY;
+			return true;
+		}
+
+		// Center crop extends the start bounds on the axis with the smaller
+		// ratio, fit center shrinks them on the axis with the larger ratio.
+		// Either way the scaled view is centered on the zoomed-out view.
+		final float scale = mode == FIT_CENTER ? Math.min(scaleX, scaleY) : Math.max(scaleX, scaleY);
+		out[outOffset + START_X] = startLeft + (startWidth - scale * finalWidth) / 2f;
+		out[outOffset + START_Y] = startTop + (startHeight - scale * finalHeight) / 2f;
+		out[outOffset + START_SCALE_X] = scale;
+		out[outOffset + START_SCALE_Y] = scale;
+		return true;
+	}
+
+	/**
+	 * Compute the start translation and scale for many view/container pairs at once.
+	 * @param mode One of {@link #CENTER_CROP}, {@link #FIT_CENTER} or {@link #FIT_XY}
+	 * @param startRects {@code count} packed start rectangles, {@link #RECT_SIZE} ints each
+	 * @param finalRects {@code count} packed final rectangles, {@link #RECT_SIZE} ints each
+	 * @param count The number of pairs
+	 * @param out Receives {@code count} results of {@link #RESULT_SIZE} floats each. The result of a pair with an empty rectangle is the identity (no translation, scale 1).
+	 * @return The number of pairs that had a non-empty geometry
+	 */
+	public static int computeBatch(int mode, int[] startRects, int[] finalRects, int count, float[] out) {
+		int valid = 0;
+		for (int i = 0; i < count; i++) {
+			final int r = i * RECT_SIZE;
+			final int o = i * RESULT_SIZE;
+			if (compute(mode, startRects[r], startRects[r + 1], startRects[r + 2], startRects[r + 3],
+					finalRects[r], finalRects[r + 1], finalRects[r + 2], finalRects[r + 3], out, o)) {
+				valid++;
+			} else {
+				out[o + START_X] = finalRects[r];
+				out[o + START_Y] = finalRects[r + 1];
+				out[o + START_SCALE_X] = 1f;
+				out[o + START_SCALE_Y] = 1f;
+			}
+		}
+		return valid;
+	}
+}